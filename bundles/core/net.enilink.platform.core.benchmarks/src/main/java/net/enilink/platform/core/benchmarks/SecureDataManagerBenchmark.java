@@ -0,0 +1,100 @@
+package net.enilink.platform.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.enilink.komma.core.IEntityManager;
+import net.enilink.komma.core.Statement;
+import net.enilink.komma.core.URI;
+import net.enilink.platform.core.security.SecurityUtil;
+import net.enilink.vocab.rdfs.RDFS;
+
+/**
+ * Measures add and remove operations of the secure data manager in the
+ * {@link net.enilink.vocab.acl.WEBACL#MODE_WRITE} and
+ * {@link net.enilink.vocab.acl.ENILINKACL#MODE_WRITERESTRICTED} modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureDataManagerBenchmark {
+	@Param({ "10", "100" })
+	public int models;
+
+	@Param({ "10", "1000" })
+	public int users;
+
+	@Param({ "5" })
+	public int aclsPerUser;
+
+	SecurityFixture fixture;
+
+	URI user;
+
+	Subject subject;
+
+	Statement writableStmt;
+
+	Statement restrictedStmt;
+
+	Statement restrictedBlankNodeStmt;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new SecurityFixture(models, users, aclsPerUser);
+		user = fixture.users.get(fixture.users.size() / 2);
+		subject = SecurityUtil.subjectForUser(user);
+		URI resource = SecurityFixture.resourceOf(user);
+		writableStmt = new Statement(resource, RDFS.PROPERTY_LABEL, "label");
+		restrictedStmt = new Statement(resource, RDFS.PROPERTY_LABEL, "label");
+		restrictedBlankNodeStmt = new Statement(resource, RDFS.PROPERTY_SEEALSO,
+				fixture.restrictedModel.getManager().createReference());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.dispose();
+	}
+
+	void addAndRemove(IEntityManager em, Statement stmt) {
+		Subject.callAs(subject, () -> {
+			em.add(stmt);
+			em.remove(stmt);
+			return null;
+		});
+	}
+
+	@Benchmark
+	public void addRemoveWrite() {
+		addAndRemove(fixture.writableModel.getManager(), writableStmt);
+	}
+
+	@Benchmark
+	public void addRemoveWriteRestricted() {
+		addAndRemove(fixture.restrictedModel.getManager(), restrictedStmt);
+	}
+
+	@Benchmark
+	public void addRemoveWriteRestrictedBlankNode() {
+		// references to blank nodes require additional checks
+		addAndRemove(fixture.restrictedModel.getManager(), restrictedBlankNodeStmt);
+	}
+}
@@ -0,0 +1,95 @@
+package net.enilink.platform.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URI;
+import net.enilink.platform.core.security.ISecureModelSet;
+import net.enilink.platform.core.security.SecurityUtil;
+
+/**
+ * Measures read permission checks, the retrieval of the current user and the
+ * listing of readable models.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureModelSetBenchmark {
+	@Param({ "10", "100" })
+	public int models;
+
+	@Param({ "10", "1000" })
+	public int users;
+
+	@Param({ "5" })
+	public int aclsPerUser;
+
+	SecurityFixture fixture;
+
+	ISecureModelSet secureModelSet;
+
+	URI user;
+
+	Subject subject;
+
+	IReference readableModel;
+
+	IReference unreadableModel;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new SecurityFixture(models, users, aclsPerUser);
+		secureModelSet = (ISecureModelSet) fixture.modelSet;
+		int userIndex = fixture.users.size() / 2;
+		user = fixture.users.get(userIndex);
+		subject = SecurityUtil.subjectForUser(user);
+		readableModel = fixture.models.get(userIndex % fixture.models.size());
+		unreadableModel = fixture.models.get((userIndex + aclsPerUser + 1) % fixture.models.size());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.dispose();
+	}
+
+	@Benchmark
+	public boolean isReadableBy() {
+		return secureModelSet.isReadableBy(readableModel, user) & secureModelSet.isReadableBy(unreadableModel, user);
+	}
+
+	@Benchmark
+	public boolean isReadableByUncached() {
+		secureModelSet.getPermissionCache().clear();
+		return secureModelSet.isReadableBy(readableModel, user) & secureModelSet.isReadableBy(unreadableModel, user);
+	}
+
+	@Benchmark
+	public URI getUser() {
+		return Subject.callAs(subject, SecurityUtil::getUser);
+	}
+
+	@Benchmark
+	public int listModels() {
+		// uses the query of SecurePropertySetFactory
+		return Subject.callAs(subject, () -> fixture.modelSet.getModels().size());
+	}
+}
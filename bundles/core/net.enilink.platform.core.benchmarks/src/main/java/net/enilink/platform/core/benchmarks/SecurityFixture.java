@@ -0,0 +1,165 @@
+package net.enilink.platform.core.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.security.auth.Subject;
+
+import com.google.inject.Guice;
+import com.google.inject.Module;
+
+import net.enilink.composition.properties.PropertySetFactory;
+import net.enilink.komma.core.IEntityManager;
+import net.enilink.komma.core.IGraph;
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.KommaModule;
+import net.enilink.komma.core.LinkedHashGraph;
+import net.enilink.komma.core.Statement;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.komma.em.CachingEntityManagerModule;
+import net.enilink.komma.model.IModel;
+import net.enilink.komma.model.IModelSet;
+import net.enilink.komma.model.IModelSetFactory;
+import net.enilink.komma.model.MODELS;
+import net.enilink.komma.model.ModelPlugin;
+import net.enilink.komma.model.ModelSetModule;
+import net.enilink.platform.core.security.ISecureEntity;
+import net.enilink.platform.core.security.ISecureModelSet;
+import net.enilink.platform.core.security.SecureEntitySupport;
+import net.enilink.platform.core.security.SecureModelSetSupport;
+import net.enilink.platform.core.security.SecureModelSupport;
+import net.enilink.platform.core.security.SecurePropertySetFactory;
+import net.enilink.platform.core.security.SecurityUtil;
+import net.enilink.platform.security.auth.AuthModule;
+import net.enilink.vocab.acl.ENILINKACL;
+import net.enilink.vocab.acl.WEBACL;
+import net.enilink.vocab.foaf.FOAF;
+import net.enilink.vocab.rdf.RDF;
+
+/**
+ * Creates a secured in-memory model set with a synthetic ACL graph.
+ * <p>
+ * The graph consists of <code>modelCount</code> models and
+ * <code>userCount</code> users that are organized in groups of ten users.
+ * Each user is allowed to read <code>aclsPerUser</code> models, each group
+ * is allowed to read one further model. The first model is writable by all
+ * users and the second model is writable in restricted mode where each user
+ * may only change its own resource.
+ */
+public class SecurityFixture {
+	public static final int GROUP_SIZE = 10;
+
+	public final IModelSet modelSet;
+
+	public final List<IModel> models = new ArrayList<>();
+
+	public final List<URI> users = new ArrayList<>();
+
+	public final IModel writableModel;
+
+	public final IModel restrictedModel;
+
+	public SecurityFixture(int modelCount, int userCount, int aclsPerUser) {
+		modelSet = createModelSet();
+		for (int i = 0; i < Math.max(2, modelCount); i++) {
+			models.add(modelSet.createModel(URIs.createURI("http://enilink.net/benchmark/model" + i)));
+		}
+		writableModel = models.get(0);
+		restrictedModel = models.get(1);
+		for (int i = 0; i < userCount; i++) {
+			users.add(SecurityUtil.usernameToUri("user" + i));
+		}
+
+		IEntityManager em = modelSet.getMetaDataManager();
+		em.getTransaction().begin();
+		try {
+			for (int i = 0; i < users.size(); i++) {
+				URI user = users.get(i);
+				em.add(new Statement(user, RDF.PROPERTY_TYPE, FOAF.TYPE_AGENT));
+				URI group = URIs.createURI("enilink:group:group" + (i / GROUP_SIZE));
+				em.add(new Statement(group, FOAF.PROPERTY_MEMBER, user));
+				if (i % GROUP_SIZE == 0) {
+					addAcl(em, group, models.get((i / GROUP_SIZE) % models.size()), WEBACL.MODE_READ);
+				}
+				for (int j = 0; j < aclsPerUser; j++) {
+					addAcl(em, user, models.get((i + j) % models.size()), WEBACL.MODE_READ);
+				}
+				addAcl(em, user, writableModel, WEBACL.MODE_WRITE);
+				addAcl(em, user, restrictedModel, ENILINKACL.MODE_WRITERESTRICTED);
+			}
+			em.getTransaction().commit();
+		} finally {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+		}
+		// like ModelSetManager for the productive model set
+		((ISecureModelSet) modelSet).getMembershipIndex().load(em);
+
+		// resources of the restricted model that are writable by their users
+		Subject.callAs(SecurityUtil.SYSTEM_USER_SUBJECT, () -> {
+			IEntityManager restrictedEm = restrictedModel.getManager();
+			restrictedEm.getTransaction().begin();
+			try {
+				for (URI user : users) {
+					addAcl(restrictedEm, user, resourceOf(user), WEBACL.MODE_WRITE);
+				}
+				restrictedEm.getTransaction().commit();
+			} finally {
+				if (restrictedEm.getTransaction().isActive()) {
+					restrictedEm.getTransaction().rollback();
+				}
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Returns the resource that is writable by the given user within the
+	 * restricted model.
+	 */
+	public static URI resourceOf(URI user) {
+		return URIs.createURI("http://enilink.net/benchmark/resource/" + SecurityUtil.uriToUsername(user));
+	}
+
+	static void addAcl(IEntityManager em, IReference agent, IReference target, IReference mode) {
+		IReference acl = em.createReference();
+		em.add(new Statement(acl, RDF.PROPERTY_TYPE, WEBACL.TYPE_AUTHORIZATION));
+		em.add(new Statement(acl, WEBACL.PROPERTY_ACCESSTO, target));
+		em.add(new Statement(acl, WEBACL.PROPERTY_AGENT, agent));
+		em.add(new Statement(acl, WEBACL.PROPERTY_MODE, mode));
+	}
+
+	static IModelSet createModelSet() {
+		KommaModule module = ModelPlugin.createModelSetModule(SecurityFixture.class.getClassLoader());
+		module.includeModule(new AuthModule());
+
+		module.addBehaviour(SecureModelSetSupport.class);
+		module.addBehaviour(SecureModelSupport.class);
+		module.addConcept(ISecureEntity.class);
+		module.addBehaviour(SecureEntitySupport.class);
+
+		IModelSetFactory factory = Guice.createInjector(new ModelSetModule(module) {
+			@Override
+			protected Module getEntityManagerModule() {
+				return new CachingEntityManagerModule() {
+					@Override
+					protected Class<? extends PropertySetFactory> getPropertySetFactoryClass() {
+						return SecurePropertySetFactory.class;
+					}
+				};
+			}
+		}).getInstance(IModelSetFactory.class);
+		IGraph config = new LinkedHashGraph();
+		URI msUri = URIs.createURI("benchmark:modelSet");
+		config.add(msUri, RDF.PROPERTY_TYPE, MODELS.TYPE_MODELSET);
+		config.add(msUri, RDF.PROPERTY_TYPE, MODELS.NAMESPACE_URI.appendLocalPart("MemoryModelSet"));
+		config.add(msUri, MODELS.NAMESPACE_URI.appendLocalPart("inference"), false);
+		return factory.createModelSet(msUri, config);
+	}
+
+	public void dispose() {
+		modelSet.dispose();
+	}
+}
@@ -0,0 +1,33 @@
+package net.enilink.platform.core;
+
+import java.util.Set;
+
+import org.aopalliance.intercept.MethodInvocation;
+
+import net.enilink.composition.annotations.ParameterTypes;
+import net.enilink.composition.traits.Behaviour;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.model.IModel;
+import net.enilink.komma.model.IModelSet;
+
+/**
+ * Creates models of the models directory on their first access or if the
+ * models of the model set are listed.
+ */
+public abstract class LazyModelSetSupport implements IModelSet, Behaviour<IModelSet> {
+	@ParameterTypes({ URI.class, boolean.class })
+	public IModel getModel(MethodInvocation invocation) throws Throwable {
+		URI uri = (URI) invocation.getArguments()[0];
+		if (uri != null) {
+			ModelSetManager.INSTANCE.createLazyModel(getBehaviourDelegate(), uri);
+		}
+		return (IModel) invocation.proceed();
+	}
+
+	@SuppressWarnings("unchecked")
+	@ParameterTypes({})
+	public Set<IModel> getModels(MethodInvocation invocation) throws Throwable {
+		ModelSetManager.INSTANCE.createLazyModels(getBehaviourDelegate());
+		return (Set<IModel>) invocation.proceed();
+	}
+}
@@ -0,0 +1,194 @@
+package net.enilink.platform.core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of the model files within a models directory.
+ * <p>
+ * The index maps each file to its size, modification time and the URI of the
+ * embedded ontology. It is stored next to the directory as
+ * <code>&lt;directory name&gt;.index</code> so that only new or changed files
+ * need to be parsed on startup. Files that could not be parsed are not
+ * persisted and hence parsed again on the next startup.
+ */
+class ModelDirectoryIndex {
+	private static final Logger log = LoggerFactory.getLogger(ModelDirectoryIndex.class);
+
+	static final String HEADER = "# eniLINK models index: size, modified, ontology, path";
+
+	/**
+	 * Marker for files without an ontology element.
+	 */
+	static final String NO_ONTOLOGY = "-";
+
+	/**
+	 * Determines the ontology URI of a model file.
+	 */
+	interface OntologyFinder {
+		/**
+		 * @return The ontology URI or <code>null</code> if the file does not
+		 * contain an ontology element
+		 * @throws Exception if the file can not be read or parsed
+		 */
+		String find(Path file) throws Exception;
+	}
+
+	static class Entry {
+		final Path file;
+		final long size;
+		final long modified;
+		final String ontology;
+		final boolean failed;
+
+		Entry(Path file, long size, long modified, String ontology) {
+			this(file, size, modified, ontology, false);
+		}
+
+		Entry(Path file, long size, long modified, String ontology, boolean failed) {
+			this.file = file;
+			this.size = size;
+			this.modified = modified;
+			this.ontology = ontology;
+			this.failed = failed;
+		}
+	}
+
+	final Path directory;
+
+	final Path indexFile;
+
+	final Map<Path, Entry> entries = new HashMap<>();
+
+	boolean modified;
+
+	ModelDirectoryIndex(Path directory) {
+		this.directory = directory.toAbsolutePath().normalize();
+		Path name = this.directory.getFileName();
+		this.indexFile = this.directory.resolveSibling((name != null ? name.toString() : "models") + ".index");
+	}
+
+	/**
+	 * Reads the persisted index, if any.
+	 */
+	void load() {
+		if (!Files.isRegularFile(indexFile)) {
+			return;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split("\t", 4);
+				if (fields.length < 4) {
+					continue;
+				}
+				Path file = directory.resolve(fields[3]).normalize();
+				String ontology = NO_ONTOLOGY.equals(fields[2]) ? null : fields[2];
+				entries.put(file, new Entry(file, Long.parseLong(fields[0]), Long.parseLong(fields[1]), ontology));
+			}
+		} catch (IOException | NumberFormatException e) {
+			log.warn("Ignoring invalid models index {}", indexFile, e);
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Synchronizes the index with the contents of the directory.
+	 *
+	 * @param findOntology Determines the ontology URI of a new or changed file,
+	 *                     it is invoked in parallel
+	 * @return The entries of all model files in the order of the directory
+	 * walk
+	 */
+	List<Entry> update(OntologyFinder findOntology) throws IOException {
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:**/*.{ttl,owl}");
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(directory)) {
+			files = paths.filter(matcher::matches).map(Path::normalize).toList();
+		}
+		List<Entry> result = new ArrayList<>(files.size());
+		List<Integer> changed = new ArrayList<>();
+		for (Path file : files) {
+			BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+			long size = attrs.size();
+			long mtime = attrs.lastModifiedTime().toMillis();
+			Entry entry = entries.get(file);
+			if (entry == null || entry.size != size || entry.modified != mtime) {
+				entry = new Entry(file, size, mtime, null);
+				changed.add(result.size());
+			}
+			result.add(entry);
+		}
+		// parse only new or changed files
+		List<Entry> parsed = changed.parallelStream().map(i -> parse(result.get(i), findOntology)).toList();
+		for (int i = 0; i < changed.size(); i++) {
+			result.set(changed.get(i), parsed.get(i));
+		}
+		modified |= !changed.isEmpty() || result.size() != entries.size();
+		entries.clear();
+		for (Entry entry : result) {
+			entries.put(entry.file, entry);
+		}
+		log.info("Parsed {} of {} model files", changed.size(), result.size());
+		return result;
+	}
+
+	Entry parse(Entry entry, OntologyFinder findOntology) {
+		try {
+			return new Entry(entry.file, entry.size, entry.modified, findOntology.find(entry.file));
+		} catch (Exception e) {
+			log.error("Error while reading model file {}", entry.file, e);
+			return new Entry(entry.file, entry.size, entry.modified, null, true);
+		}
+	}
+
+	/**
+	 * Writes the index if it has been changed.
+	 * <p>
+	 * Entries of files that could not be parsed are omitted.
+	 */
+	void save() {
+		if (!modified) {
+			return;
+		}
+		try {
+			Path tmp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				writer.write(HEADER);
+				writer.newLine();
+				for (Entry entry : entries.values()) {
+					if (entry.failed) {
+						continue;
+					}
+					writer.write(entry.size + "\t" + entry.modified + "\t"
+							+ (entry.ontology != null ? entry.ontology : NO_ONTOLOGY) + "\t"
+							+ directory.relativize(entry.file));
+					writer.newLine();
+				}
+			}
+			Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			modified = false;
+		} catch (IOException e) {
+			log.warn("Unable to write models index {}", indexFile, e);
+		}
+	}
+}
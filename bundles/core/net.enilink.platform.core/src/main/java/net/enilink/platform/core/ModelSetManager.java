@@ -1,14 +1,15 @@
 package net.enilink.platform.core;
 
 import java.io.InputStream;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
 import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -17,6 +18,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.security.auth.Subject;
 
@@ -59,6 +62,7 @@ import net.enilink.komma.model.ModelUtil;
 import net.enilink.komma.model.base.IURIMapRuleSet;
 import net.enilink.komma.model.base.SimpleURIMapRule;
 import net.enilink.platform.core.security.ISecureEntity;
+import net.enilink.platform.core.security.ISecureModelSet;
 import net.enilink.platform.core.security.SecureEntitySupport;
 import net.enilink.platform.core.security.SecureModelSetSupport;
 import net.enilink.platform.core.security.SecureModelSupport;
@@ -84,7 +88,27 @@ class ModelSetManager {
 	private static final URI DATA_MODELSET = URIs.createURI("urn:enilink:data");
 
 	private final UnitOfWork uow = new UnitOfWork();
+
+	/**
+	 * A model of the models directory that is created on first access. It is
+	 * also used as lock while the model is created.
+	 */
+	static class LazyModel {
+		final URI modelSet;
+
+		boolean created;
+
+		LazyModel(URI modelSet) {
+			this.modelSet = modelSet;
+		}
+	}
+
+	/**
+	 * Models of the models directory that are created on first access.
+	 */
+	private final Map<URI, LazyModel> lazyModels = new ConcurrentHashMap<>();
 	private IModelSet modelSet;
+	private IModelSet metaModelSet;
 
 	protected void overwriteProperty(IGraph data, URI s, URI property, Object value) {
 		if (value != null) {
@@ -167,6 +191,7 @@ class ModelSetManager {
 		module.addBehaviour(GraphDbModelSetSupport.class);
 		module.addBehaviour(SessionModelSetSupport.class);
 		module.addBehaviour(LazyModelSupport.class);
+		module.addBehaviour(LazyModelSetSupport.class);
 
 		module.addBehaviour(SecureModelSetSupport.class);
 		module.addBehaviour(SecureModelSupport.class);
@@ -277,32 +302,121 @@ class ModelSetManager {
 		if (modelsLookupDir != null) {
 			log.info("Looking for models in: {}", modelsLookupDir);
 			try {
-				PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:**/*.{ttl,owl}");
-				List<Path> modelFiles = Files.walk(Paths.get(modelsLookupDir)).filter(matcher::matches)
-						.toList();
+				long start = System.nanoTime();
+				// only new or changed files are parsed, the ontology headers
+				// are parsed in parallel
+				ModelDirectoryIndex index = new ModelDirectoryIndex(Paths.get(modelsLookupDir));
+				index.load();
+				List<ModelDirectoryIndex.Entry> modelFiles = index.update(this::findOntology);
+				index.save();
+				log.info("Indexed {} model files in {} ms", modelFiles.size(), millisSince(start));
+
+				start = System.nanoTime();
+				boolean lazy = !"false".equals(FrameworkUtil.getBundle(getClass()).getBundleContext()
+						.getProperty("net.enilink.models.lazy"));
 				IURIMapRuleSet mapRules = modelSet.getURIConverter().getURIMapRules();
-				for (Path modelFile : modelFiles) {
-					URI fileUri = URIs.createFileURI(modelFile.toString());
-					String modelUri;
-					try (InputStream in = Files.newInputStream(modelFile)) {
-						String mimeType = ModelUtil.mimeType(modelFile.toString());
-						// use the embedded ontology element as model URI
-						modelUri = ModelUtil.findOntology(in, fileUri.toString(), mimeType);
-					}
+				int created = 0;
+				for (ModelDirectoryIndex.Entry modelFile : modelFiles) {
+					String modelUri = modelFile.ontology;
 					if (modelUri != null) {
-						mapRules.addRule(new SimpleURIMapRule(modelUri, modelFile.toString()));
+						mapRules.addRule(new SimpleURIMapRule(modelUri, modelFile.file.toString()));
+						if (lazy && modelSet.getModel(URIs.createURI(modelUri), false) == null) {
+							// the model is created on first access
+							registerLazyModel(modelSet, URIs.createURI(modelUri));
+							continue;
+						}
 					} else {
-						modelUri = modelFile.toString();
+						modelUri = modelFile.file.toString();
 					}
 					log.info("Creating model <{}>", modelUri);
 					modelSet.createModel(URIs.createURI(modelUri));
+					created++;
 				}
+				log.info("Created {} models and registered {} models for lazy creation in {} ms", created,
+						lazyModels.size(), millisSince(start));
 			} catch (Exception e) {
 				log.error("Error while loading models", e);
 			}
 		}
 	}
 
+	/**
+	 * Returns the URI of the ontology that is embedded in a model file.
+	 *
+	 * @param modelFile The model file
+	 * @return The ontology URI or <code>null</code> if the file does not contain
+	 * an ontology element
+	 * @throws Exception if the file can not be read or parsed
+	 */
+	protected String findOntology(Path modelFile) throws Exception {
+		URI fileUri = URIs.createFileURI(modelFile.toString());
+		try (InputStream in = Files.newInputStream(modelFile)) {
+			String mimeType = ModelUtil.mimeType(modelFile.toString());
+			// use the embedded ontology element as model URI
+			return ModelUtil.findOntology(in, fileUri.toString(), mimeType);
+		}
+	}
+
+	/**
+	 * Registers a model that should be created on its first access.
+	 *
+	 * @param modelSet The model set that should contain the model
+	 * @param uri      The model URI
+	 */
+	void registerLazyModel(IModelSet modelSet, URI uri) {
+		lazyModels.put(uri, new LazyModel(((IReference) modelSet).getURI()));
+	}
+
+	/**
+	 * Creates a model of the models directory if it has been registered for
+	 * lazy creation and not been created yet.
+	 *
+	 * @param modelSet The model set that is accessed
+	 * @param uri      The model URI
+	 */
+	void createLazyModel(IModelSet modelSet, URI uri) {
+		LazyModel lazyModel = lazyModels.isEmpty() ? null : lazyModels.get(uri);
+		if (lazyModel == null || !lazyModel.modelSet.equals(((IReference) modelSet).getURI())) {
+			return;
+		}
+		// concurrent requests for the same model wait until it is created
+		synchronized (lazyModel) {
+			if (!lazyModel.created) {
+				// also prevents recursive creation by the current thread
+				lazyModel.created = true;
+				try {
+					log.info("Creating model <{}>", uri);
+					// the model is owned by the system and not by the current user
+					Subject.callAs(SecurityUtil.SYSTEM_USER_SUBJECT, () -> modelSet.createModel(uri));
+				} finally {
+					lazyModels.remove(uri, lazyModel);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates all models of the models directory that have been registered
+	 * for lazy creation within the given model set.
+	 *
+	 * @param modelSet The model set whose models are listed
+	 */
+	void createLazyModels(IModelSet modelSet) {
+		if (lazyModels.isEmpty()) {
+			return;
+		}
+		URI modelSetUri = ((IReference) modelSet).getURI();
+		for (Map.Entry<URI, LazyModel> entry : lazyModels.entrySet()) {
+			if (modelSetUri.equals(entry.getValue().modelSet)) {
+				createLazyModel(modelSet, entry.getKey());
+			}
+		}
+	}
+
+	static long millisSince(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
 	public synchronized IUnitOfWork getUnitOfWork() {
 		return uow;
 	}
@@ -319,6 +433,7 @@ class ModelSetManager {
 							modelSet = createModelSet(config);
 						} else {
 							IModelSet metaModelSet = createMetaModelSet(config);
+							ModelSetManager.this.metaModelSet = metaModelSet;
 							IModel metaDataModel = metaModelSet.createModel(URIs.createURI("urn:enilink:metadata"));
 							modelSet = createModelSet(config, metaDataModel);
 						}
@@ -332,10 +447,29 @@ class ModelSetManager {
 						em.createNamed(SecurityUtil.UNKNOWN_USER, FOAF.TYPE_AGENT);
 
 						// load users, groups and ACL config
-						loadUsersAndGroups(em, config);
-						loadAcls(em, config);
+						long start = System.nanoTime();
+						Map<IReference, List<IStatement>> configBySubject = indexBySubject(config);
+						log.info("Indexed configuration in {} ms", millisSince(start));
+
+						start = System.nanoTime();
+						loadUsersAndGroups(em, config, configBySubject);
+						log.info("Loaded users and groups in {} ms", millisSince(start));
+
+						start = System.nanoTime();
+						loadAcls(em, config, configBySubject);
+						log.info("Loaded ACLs in {} ms", millisSince(start));
+
+						if (modelSet instanceof ISecureModelSet secureModelSet) {
+							// build index of groups and agent classes, it is
+							// kept up-to-date by the model set afterwards
+							start = System.nanoTime();
+							secureModelSet.getMembershipIndex().load(em);
+							log.info("Indexed group memberships in {} ms", millisSince(start));
+						}
 
+						start = System.nanoTime();
 						createModels(modelSet, config);
+						log.info("Initialized models in {} ms", millisSince(start));
 
 						return modelSet;
 					});
@@ -367,31 +501,60 @@ class ModelSetManager {
 	 * @param em     The target entity manager
 	 * @param config The source graph
 	 */
-	protected void loadUsersAndGroups(IEntityManager em, Config config) {
+	protected void loadUsersAndGroups(IEntityManager em, Config config,
+	                                  Map<IReference, List<IStatement>> configBySubject) {
 		Set<IReference> seen = new HashSet<>();
+		Set<IStatement> toAdd = new HashSet<>();
 		for (IReference rdfType : Arrays.asList(FOAF.TYPE_AGENT, FOAF.TYPE_PERSON,
 				FOAF.TYPE_GROUP, FOAF.TYPE_ORGANIZATION)) {
 			for (IReference group : config.filter(null, RDF.PROPERTY_TYPE, rdfType).subjects()) {
-				copyFromGraph(em, group, config, seen);
+				copyFromGraph(toAdd, group, configBySubject, seen);
 			}
 		}
+		// add all statements at once in one transaction
+		em.add(toAdd);
 	}
 
-	protected void loadAcls(IEntityManager em, Config config) {
+	protected void loadAcls(IEntityManager em, Config config, Map<IReference, List<IStatement>> configBySubject) {
 		Set<IReference> seen = new HashSet<>();
+		Set<IStatement> toAdd = new HashSet<>();
 		for (IReference aclAuth : config.filter(null, RDF.PROPERTY_TYPE, WEBACL.TYPE_AUTHORIZATION).subjects()) {
-			copyFromGraph(em, aclAuth, config, seen);
+			copyFromGraph(toAdd, aclAuth, configBySubject, seen);
 		}
+		// add all statements at once in one transaction
+		em.add(toAdd);
 	}
 
-	protected void copyFromGraph(IEntityManager em, IReference subject, IGraph graph, Set<IReference> seen) {
-		Set<IStatement> toAdd = new HashSet<>();
-		Queue<IReference> queue = new LinkedList<>();
+	/**
+	 * Groups the statements of a graph by their subjects.
+	 *
+	 * @param graph The source graph
+	 * @return Map of subjects to their statements
+	 */
+	protected static Map<IReference, List<IStatement>> indexBySubject(IGraph graph) {
+		Map<IReference, List<IStatement>> index = new HashMap<>();
+		for (IStatement stmt : graph) {
+			index.computeIfAbsent(stmt.getSubject(), s -> new ArrayList<>()).add(stmt);
+		}
+		return index;
+	}
+
+	/**
+	 * Collects the statements that are reachable from a subject.
+	 *
+	 * @param toAdd           The target collection
+	 * @param subject         The start node
+	 * @param configBySubject The statements of the source graph grouped by their subjects
+	 * @param seen            Nodes that have already been visited
+	 */
+	protected void copyFromGraph(Collection<IStatement> toAdd, IReference subject,
+	                             Map<IReference, List<IStatement>> configBySubject, Set<IReference> seen) {
+		Queue<IReference> queue = new ArrayDeque<>();
 		queue.add(subject);
 		while (!queue.isEmpty()) {
 			IReference s = queue.remove();
 			if (seen.add(s)) {
-				IGraph stmts = graph.filter(s, null, null);
+				List<IStatement> stmts = configBySubject.getOrDefault(s, Collections.emptyList());
 				for (IStatement stmt : stmts) {
 					// ensure that passwords are always encoded
 					if (AUTH.PROPERTY_PASSWORD.equals(stmt.getPredicate())) {
@@ -408,11 +571,20 @@ class ModelSetManager {
 				}
 			}
 		}
-		// add all statements at once in one transaction
-		em.add(toAdd);
+	}
+
+	/**
+	 * Returns all model sets that are managed by this manager, i.e. the data
+	 * model set and the model set that contains its meta data if it exists.
+	 */
+	public synchronized List<IModelSet> getModelSets() {
+		IModelSet dataModelSet = getModelSet();
+		return metaModelSet != null ? List.of(dataModelSet, metaModelSet) : List.of(dataModelSet);
 	}
 
 	public synchronized void shutdown() {
+		lazyModels.clear();
+		metaModelSet = null;
 		if (modelSet != null) {
 			modelSet.dispose();
 			modelSet = null;
@@ -0,0 +1,293 @@
+package net.enilink.platform.core.blobs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Mark-and-sweep garbage collector for blobs of a {@link FileStore} that are
+ * no longer referenced.
+ * <p>
+ * Orphans are deleted in batches with a delay between each batch to limit
+ * the I/O load. Blobs and chunks that have been stored or reused within the
+ * grace period are never deleted since references to them may not yet be
+ * visible. The age of each file is checked again right before it is deleted
+ * since it may have been reused by a concurrent store operation after it
+ * has been found to be orphaned.
+ */
+public class BlobCollector {
+	/**
+	 * The result of a collection.
+	 */
+	public static class Report {
+		final boolean dryRun;
+		final Set<String> orphans = new LinkedHashSet<>();
+		int blobs;
+		int chunks;
+		int orphanChunks;
+		int orphanMetadata;
+		long orphanBytes;
+		int deleted;
+
+		Report(boolean dryRun) {
+			this.dryRun = dryRun;
+		}
+
+		/**
+		 * Returns <code>true</code> if nothing has been deleted.
+		 */
+		public boolean isDryRun() {
+			return dryRun;
+		}
+
+		/**
+		 * Returns the number of blobs in the store.
+		 */
+		public int getBlobs() {
+			return blobs;
+		}
+
+		/**
+		 * Returns the keys of blobs that are not referenced.
+		 */
+		public Set<String> getOrphans() {
+			return orphans;
+		}
+
+		/**
+		 * Returns the number of chunks in the store.
+		 */
+		public int getChunks() {
+			return chunks;
+		}
+
+		/**
+		 * Returns the number of chunks that are not used by any remaining
+		 * blob.
+		 */
+		public int getOrphanChunks() {
+			return orphanChunks;
+		}
+
+		/**
+		 * Returns the number of meta-data entries without a remaining blob.
+		 */
+		public int getOrphanMetadata() {
+			return orphanMetadata;
+		}
+
+		/**
+		 * Returns the number of bytes used by orphaned blobs and chunks.
+		 */
+		public long getOrphanBytes() {
+			return orphanBytes;
+		}
+
+		/**
+		 * Returns the number of deleted files.
+		 */
+		public int getDeleted() {
+			return deleted;
+		}
+
+		@Override
+		public String toString() {
+			return (dryRun ? "Dry run: " : "") + orphans.size() + " of "
+					+ blobs + " blobs and " + orphanChunks + " of " + chunks
+					+ " chunks are orphaned (" + orphanBytes + " bytes), "
+					+ orphanMetadata + " orphaned meta-data entries, "
+					+ deleted + " files deleted";
+		}
+	}
+
+	protected final FileStore store;
+
+	protected int batchSize = 100;
+
+	protected long batchDelay = 1000;
+
+	protected long gracePeriod = 24 * 60 * 60 * 1000L;
+
+	int deletedInBatch;
+
+	public BlobCollector(FileStore store) {
+		this.store = store;
+	}
+
+	/**
+	 * Sets the number of files that are deleted before pausing.
+	 */
+	public BlobCollector setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Sets the pause between two batches in milliseconds.
+	 */
+	public BlobCollector setBatchDelay(long batchDelay) {
+		this.batchDelay = batchDelay;
+		return this;
+	}
+
+	/**
+	 * Sets the age in milliseconds that a blob must have before it may be
+	 * deleted.
+	 */
+	public BlobCollector setGracePeriod(long gracePeriod) {
+		this.gracePeriod = gracePeriod;
+		return this;
+	}
+
+	/**
+	 * Deletes all blobs that are not referenced.
+	 *
+	 * @param isReferenced
+	 *            Test if a key is referenced
+	 * @param dryRun
+	 *            <code>true</code> if orphans should only be reported but
+	 *            not deleted
+	 * @return A report of the collection
+	 */
+	public Report collect(Predicate<String> isReferenced, boolean dryRun)
+			throws IOException, InterruptedException {
+		Report report = new Report(dryRun);
+		long minModified = System.currentTimeMillis() - gracePeriod;
+		Path chunksDir = store.chunksDir();
+		Set<String> remaining = new HashSet<>();
+		Set<String> usedChunks = new HashSet<>();
+		Set<Path> dirs = new HashSet<>();
+		deletedInBatch = 0;
+
+		// sweep blobs and mark the chunks of the remaining blobs
+		try (Stream<Path> files = walk(store.root)) {
+			Iterator<Path> it = files.filter(
+					path -> !path.startsWith(chunksDir)).iterator();
+			while (it.hasNext()) {
+				Path file = it.next();
+				String name = file.getFileName().toString();
+				boolean manifest = name.endsWith(FileStore.MANIFEST_SUFFIX);
+				String key = manifest ? name.substring(0, name.length()
+						- FileStore.MANIFEST_SUFFIX.length()) : name;
+				BasicFileAttributes attrs = attributes(file);
+				if (attrs == null
+						|| !FileStore.KEY_PATTERN.matcher(key).matches()) {
+					continue;
+				}
+				report.blobs++;
+				if (!isReferenced.test(key)
+						&& attrs.lastModifiedTime().toMillis() < minModified) {
+					if (dryRun) {
+						report.orphans.add(key);
+						report.orphanBytes += attrs.size();
+						continue;
+					}
+					if (delete(key, file, minModified, dirs, report)) {
+						report.orphans.add(key);
+						report.orphanBytes += attrs.size();
+						Files.deleteIfExists(store.metaDataBackupPath(store
+								.pathForKey(key)));
+						continue;
+					}
+					if (!Files.exists(file)) {
+						// deleted concurrently
+						continue;
+					}
+					// reused concurrently, also keep its chunks
+				}
+				remaining.add(key);
+				if (manifest) {
+					for (ChunkManifest.Chunk chunk : ChunkManifest
+							.read(file).chunks) {
+						usedChunks.add(chunk.key);
+					}
+				}
+			}
+		}
+
+		// sweep chunks that are not used by any remaining blob
+		try (Stream<Path> files = walk(chunksDir)) {
+			Iterator<Path> it = files.iterator();
+			while (it.hasNext()) {
+				Path file = it.next();
+				String key = file.getFileName().toString();
+				BasicFileAttributes attrs = attributes(file);
+				if (attrs == null
+						|| !FileStore.KEY_PATTERN.matcher(key).matches()) {
+					continue;
+				}
+				report.chunks++;
+				if (!usedChunks.contains(key)
+						&& attrs.lastModifiedTime().toMillis() < minModified
+						&& (dryRun || delete(key, file, minModified, dirs,
+								report))) {
+					report.orphanChunks++;
+					report.orphanBytes += attrs.size();
+				}
+			}
+		}
+
+		// remove meta-data of blobs that do no longer exist
+		MetadataIndex metadata = store.metadata();
+		for (String key : new ArrayList<>(metadata.keys())) {
+			if (!remaining.contains(key)) {
+				report.orphanMetadata++;
+				if (!dryRun && !store.exists(key)) {
+					metadata.remove(key);
+				}
+			}
+		}
+
+		for (Path dir : dirs) {
+			store.deleteEmptyDirectories(dir);
+		}
+		return report;
+	}
+
+	Stream<Path> walk(Path dir) throws IOException {
+		if (!Files.isDirectory(dir)) {
+			return Stream.empty();
+		}
+		return Files.walk(dir).filter(Files::isRegularFile);
+	}
+
+	BasicFileAttributes attributes(Path file) {
+		try {
+			return Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (IOException e) {
+			// concurrently deleted
+			return null;
+		}
+	}
+
+	/**
+	 * Deletes a file unless it has been reused since the collection has
+	 * started.
+	 *
+	 * @return <code>true</code> if the file has been deleted, else
+	 *         <code>false</code>
+	 */
+	boolean delete(String key, Path file, long minModified, Set<Path> dirs,
+			Report report) throws IOException, InterruptedException {
+		if (store.deleteIfNotModifiedSince(key, file, minModified)) {
+			report.deleted++;
+			dirs.add(file.getParent());
+			if (++deletedInBatch >= batchSize) {
+				deletedInBatch = 0;
+				if (batchDelay > 0) {
+					Thread.sleep(batchDelay);
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+}
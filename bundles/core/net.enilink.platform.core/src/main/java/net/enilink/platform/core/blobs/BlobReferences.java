@@ -0,0 +1,124 @@
+package net.enilink.platform.core.blobs;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.security.auth.Subject;
+
+import net.enilink.commons.iterator.IExtendedIterator;
+import net.enilink.komma.core.IBindings;
+import net.enilink.komma.core.ILiteral;
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.dm.IDataManager;
+import net.enilink.komma.model.IModelSet;
+import net.enilink.platform.core.security.SecurityUtil;
+
+/**
+ * Finds blobs that are referenced by RDF statements.
+ * <p>
+ * Blobs are referenced by URIs of the form <code>blobs:&lt;key&gt;</code>,
+ * e.g. by the <code>dcterms:identifier</code> of LDP non-RDF sources. Blobs
+ * uploaded through the file service are referenced by their URLs of the form
+ * <code>.../files/&lt;key&gt;</code> or by their plain keys which may both be
+ * used as URIs or literals.
+ * <p>
+ * The statements are scanned by the store which returns only the distinct
+ * IRIs and literals that contain a key. Hence the memory required for a scan
+ * depends on the number of references and not on the number of statements.
+ */
+public class BlobReferences {
+	public static final String SCHEME = "blobs";
+
+	/**
+	 * Matches the keys within URLs of the file service.
+	 */
+	static final Pattern FILES_URL_PATTERN = Pattern.compile("(?:^|/)files/("
+			+ FileStore.KEY_PATTERN.pattern() + ")(?![\\w.-])");
+
+	/**
+	 * Selects the nodes that may reference blobs.
+	 */
+	static final String QUERY_CANDIDATES = "select distinct ?node where { "
+			+ "{ ?node ?p ?o } union { ?s ?p ?node } "
+			+ "filter (!isBlank(?node) && regex(str(?node), \""
+			+ FileStore.KEY_PATTERN.pattern() + "\")) }";
+
+	/**
+	 * Returns the keys of all blobs that are referenced within any model of
+	 * the given model set.
+	 *
+	 * @param modelSet
+	 *            The model set
+	 * @return The referenced keys
+	 */
+	public static Set<String> find(IModelSet modelSet) {
+		return find(Collections.singleton(modelSet));
+	}
+
+	/**
+	 * Returns the keys of all blobs that are referenced within any model of
+	 * the given model sets.
+	 *
+	 * @param modelSets
+	 *            The model sets
+	 * @return The referenced keys
+	 */
+	public static Set<String> find(Collection<? extends IModelSet> modelSets) {
+		Set<String> keys = new HashSet<>();
+		for (IModelSet modelSet : modelSets) {
+			find(modelSet, keys);
+		}
+		return keys;
+	}
+
+	static void find(IModelSet modelSet, Set<String> keys) {
+		Subject.callAs(SecurityUtil.SYSTEM_USER_SUBJECT, () -> {
+			modelSet.getUnitOfWork().begin();
+			IDataManager dm = ((IModelSet.Internal) modelSet)
+					.getDataManagerFactory().get();
+			try (IExtendedIterator<?> candidates = dm.createQuery(
+					QUERY_CANDIDATES, "base:", false).evaluate()) {
+				while (candidates.hasNext()) {
+					addKey(((IBindings<?>) candidates.next()).get("node"),
+							keys);
+				}
+			} finally {
+				dm.close();
+				modelSet.getUnitOfWork().end();
+			}
+			return null;
+		});
+	}
+
+	static void addKey(Object node, Set<String> keys) {
+		if (node instanceof IReference) {
+			URI uri = ((IReference) node).getURI();
+			if (uri == null) {
+				return;
+			}
+			if (SCHEME.equals(uri.scheme())) {
+				keys.add(uri.opaquePart());
+				return;
+			}
+			addKeys(uri.toString(), keys);
+		} else if (node instanceof ILiteral) {
+			addKeys(((ILiteral) node).getLabel().trim(), keys);
+		}
+	}
+
+	static void addKeys(String value, Set<String> keys) {
+		if (FileStore.KEY_PATTERN.matcher(value).matches()) {
+			keys.add(value);
+			return;
+		}
+		Matcher matcher = FILES_URL_PATTERN.matcher(value);
+		while (matcher.find()) {
+			keys.add(matcher.group(1));
+		}
+	}
+}
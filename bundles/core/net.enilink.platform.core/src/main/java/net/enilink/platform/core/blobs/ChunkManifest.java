@@ -0,0 +1,71 @@
+package net.enilink.platform.core.blobs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The list of chunks that make up a blob.
+ * <p>
+ * A manifest is stored as text file with the total size in the first line
+ * followed by one line with key and length for each chunk.
+ */
+class ChunkManifest {
+	static class Chunk {
+		final String key;
+		final long length;
+
+		Chunk(String key, long length) {
+			this.key = key;
+			this.length = length;
+		}
+	}
+
+	final List<Chunk> chunks = new ArrayList<>();
+
+	long size;
+
+	void add(String key, long length) {
+		chunks.add(new Chunk(key, length));
+		size += length;
+	}
+
+	static ChunkManifest read(Path path) throws IOException {
+		ChunkManifest manifest = new ChunkManifest();
+		try (BufferedReader reader = Files.newBufferedReader(path,
+				StandardCharsets.UTF_8)) {
+			String line = reader.readLine();
+			long size = line == null ? -1 : Long.parseLong(line.trim());
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				String[] fields = line.split(" ", 2);
+				manifest.add(fields[0], Long.parseLong(fields[1]));
+			}
+			if (size != manifest.size) {
+				throw new IOException("Invalid chunk manifest: " + path);
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("Invalid chunk manifest: " + path, e);
+		}
+		return manifest;
+	}
+
+	void write(Path path) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(path,
+				StandardCharsets.UTF_8)) {
+			writer.write(Long.toString(size));
+			writer.newLine();
+			for (Chunk chunk : chunks) {
+				writer.write(chunk.key + " " + chunk.length);
+				writer.newLine();
+			}
+		}
+	}
+}
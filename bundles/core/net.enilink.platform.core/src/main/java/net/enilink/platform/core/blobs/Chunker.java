@@ -0,0 +1,60 @@
+package net.enilink.platform.core.blobs;
+
+import java.util.Random;
+
+/**
+ * Splits data into content-defined chunks by using a gear rolling hash.
+ * <p>
+ * Chunk boundaries only depend on the preceding bytes. Inserting or removing
+ * data therefore only changes the chunks around the modification.
+ */
+class Chunker {
+	static final int MIN_SIZE = 64 * 1024;
+	static final int MAX_SIZE = 1024 * 1024;
+
+	/**
+	 * Uses the upper bits of the hash since they depend on a larger window of
+	 * bytes. A boundary is found every 256 KiB on average after the minimum
+	 * size.
+	 */
+	static final long MASK = ((1L << 18) - 1) << (64 - 18);
+
+	static final long[] GEAR = new long[256];
+
+	static {
+		// the seed must never change, else chunks of existing blobs are not
+		// reused
+		Random random = new Random(0x656e694c494e4bL);
+		for (int i = 0; i < GEAR.length; i++) {
+			GEAR[i] = random.nextLong();
+		}
+	}
+
+	final byte[] buffer = new byte[MAX_SIZE];
+
+	int length;
+
+	long hash;
+
+	/**
+	 * Adds a byte to the current chunk.
+	 *
+	 * @param b
+	 *            The byte
+	 * @return <code>true</code> if the chunk is complete, else
+	 *         <code>false</code>
+	 */
+	boolean add(byte b) {
+		buffer[length++] = b;
+		hash = (hash << 1) + GEAR[b & 0xFF];
+		return length >= MIN_SIZE && (hash & MASK) == 0 || length == MAX_SIZE;
+	}
+
+	/**
+	 * Starts a new chunk.
+	 */
+	void reset() {
+		length = 0;
+		hash = 0;
+	}
+}
@@ -1,41 +1,173 @@
 package net.enilink.platform.core.blobs;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.MurmurHash3;
 
 /**
  * A simple file store that stores blobs in a directory layout comparable to
  * GIT's objects folder.
+ * <p>
+ * In chunked mode blobs are split into content-defined chunks which are
+ * stored only once below the <code>chunks</code> folder. The key of a blob
+ * then refers to a manifest with the list of its chunks. Both kinds of blobs
+ * can be read regardless of the mode.
+ * <p>
+ * The algorithm for computing keys of new blobs is configurable. Blobs with
+ * keys of other algorithms remain readable.
+ * <p>
+ * The meta-data of all blobs is kept in a single index file
+ * <code>metadata.log</code> within the root folder. Meta-data from
+ * <code>.properties</code> files of earlier versions is migrated to the index
+ * on first access, the files are kept as <code>.properties.bak</code> backups
+ * until their blobs are deleted.
  */
 public class FileStore {
 	private static final int DIR_LEVELS = 3;
-	private static final Pattern KEY_PATTERN = Pattern
-			.compile("(md5|sha1|sha256)-([0-9a-f]{32,})");
+	static final Pattern KEY_PATTERN = Pattern
+			.compile("(md5|sha1|sha256|murmur3)-([0-9a-f]{32,})");
+
+	public static final String MD5 = "md5";
+	public static final String SHA1 = "sha1";
+	public static final String SHA256 = "sha256";
+	/**
+	 * Fast non-cryptographic algorithm that hashes large files in parallel.
+	 * It is only suitable for deduplication but not for integrity checks.
+	 */
+	public static final String MURMUR3 = "murmur3";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/**
+	 * Prefix of temporary files that are written to the root directory while
+	 * storing contents.
+	 */
+	private static final String TMP_PREFIX = ".store-";
+	private static final String CHUNKS_DIR = "chunks";
+	static final String MANIFEST_SUFFIX = ".chunks";
+
+	/**
+	 * Striped locks that serialize the reuse of existing blobs and chunks
+	 * with their deletion by the {@link BlobCollector}. They are shared by all
+	 * stores since multiple stores may use the same root directory.
+	 */
+	private static final Object[] KEY_LOCKS = new Object[64];
+
+	static {
+		for (int i = 0; i < KEY_LOCKS.length; i++) {
+			KEY_LOCKS[i] = new Object();
+		}
+	}
 
 	protected Path root;
 
+	protected boolean chunked;
+
+	protected String algorithm;
+
+	/**
+	 * Keeps the shared meta-data index in memory while this store is used.
+	 */
+	private volatile MetadataIndex metadata;
+
 	public FileStore(Path root) {
+		this(root, false);
+	}
+
+	public FileStore(Path root, boolean chunked) {
+		this(root, chunked, SHA1);
+	}
+
+	/**
+	 * Creates a file store.
+	 * 
+	 * @param root
+	 *            The root directory of the store.
+	 * @param chunked
+	 *            <code>true</code> if new blobs should be split into chunks
+	 *            to deduplicate contents that are shared between blobs, else
+	 *            <code>false</code>.
+	 * @param algorithm
+	 *            The algorithm for computing the keys of new blobs, one of
+	 *            {@link #MD5}, {@link #SHA1}, {@link #SHA256} or
+	 *            {@link #MURMUR3}.
+	 */
+	public FileStore(Path root, boolean chunked, String algorithm) {
+		if (!KEY_PATTERN.matcher(algorithm + "-" + "0".repeat(32)).matches()) {
+			throw new IllegalArgumentException("Unsupported algorithm: "
+					+ algorithm);
+		}
 		this.root = root;
+		this.chunked = chunked;
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * Returns the algorithm for computing the keys of new blobs.
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Returns <code>true</code> if new blobs are split into chunks.
+	 */
+	public boolean isChunked() {
+		return chunked;
+	}
+
+	protected MessageDigest createDigest() throws NoSuchAlgorithmException {
+		switch (algorithm) {
+		case MD5:
+			return MessageDigest.getInstance("MD5");
+		case SHA256:
+			return MessageDigest.getInstance("SHA-256");
+		case MURMUR3:
+			return new TreeDigest();
+		default:
+			return MessageDigest.getInstance("SHA-1");
+		}
+	}
+
+	protected String createKey(MessageDigest digest) {
+		return new StringBuilder(algorithm).append("-")
+				.append(Hex.encodeHex(digest.digest())).toString();
 	}
 
 	protected String computeKey(InputStream in, long length) throws Exception {
-		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+		MessageDigest digest = createDigest();
 		try {
 			int n = 0;
-			byte[] buffer = new byte[8192];
+			byte[] buffer = new byte[BUFFER_SIZE];
 			while (n != -1) {
 				n = in.read(buffer);
 				if (n > 0) {
@@ -45,12 +177,14 @@ public class FileStore {
 		} finally {
 			in.close();
 		}
-		return new StringBuilder("sha1").append("-")
-				.append(Hex.encodeHex(digest.digest())).toString();
+		return createKey(digest);
 	}
 
 	/**
 	 * Deletes the file associated with the given <code>key</code>.
+	 * <p>
+	 * For chunked blobs only the manifest is deleted since the chunks may be
+	 * shared with other blobs.
 	 * 
 	 * @param key
 	 *            Key of the file.
@@ -59,22 +193,37 @@ public class FileStore {
 	 */
 	public boolean delete(String key) throws IOException {
 		Path path = pathForKey(key);
-		if (Files.isRegularFile(path) && Files.deleteIfExists(path)) {
-			for (int i = 0; i < DIR_LEVELS; i++) {
-				path = path.getParent();
-				DirectoryStream<?> ds = Files.newDirectoryStream(path);
-				boolean nonempty = ds.iterator().hasNext();
-				ds.close();
-				if (nonempty) {
-					break;
-				}
-				Files.delete(path);
-			}
+		boolean deleted = Files.isRegularFile(path) && Files.deleteIfExists(path);
+		deleted |= Files.deleteIfExists(manifestPath(path));
+		if (deleted) {
+			Files.deleteIfExists(metaDataBackupPath(path));
+			deleteEmptyDirectories(path.getParent());
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Deletes the given directory and its parents up to the root of the
+	 * directory layout if they are empty.
+	 * 
+	 * @param dir
+	 *            The directory of a blob.
+	 */
+	void deleteEmptyDirectories(Path dir) throws IOException {
+		for (int i = 0; i < DIR_LEVELS && dir != null; i++) {
+			if (Files.isDirectory(dir)) {
+				try (DirectoryStream<?> ds = Files.newDirectoryStream(dir)) {
+					if (ds.iterator().hasNext()) {
+						break;
+					}
+				}
+				Files.deleteIfExists(dir);
+			}
+			dir = dir.getParent();
+		}
+	}
+
 	/**
 	 * Test if file with <code>key</code> exists in this store.
 	 * 
@@ -83,7 +232,8 @@ public class FileStore {
 	 * @return <code>true</code> if file exists, else <code>false</code>.
 	 */
 	public boolean exists(String key) {
-		return Files.exists(pathForKey(key));
+		Path path = pathForKey(key);
+		return Files.exists(path) || Files.exists(manifestPath(path));
 	}
 
 	/**
@@ -95,22 +245,31 @@ public class FileStore {
 	 * @return A properties object or <code>null</code> if it does not exist.
 	 */
 	public Properties getProperties(String key) {
-		Path metaPath = metaDataPath(pathForKey(key));
-		Properties properties = new Properties();
-		if (Files.exists(metaPath)) {
-			try {
-				properties.load(new BufferedInputStream(Files
-						.newInputStream(metaPath)));
-			} catch (IOException e) {
-				// ignore
-			}
+		try {
+			return metadata().get(key);
+		} catch (IOException e) {
+			// ignore
+			return new Properties();
 		}
-		return properties;
+	}
+
+	/**
+	 * Returns the index with the meta-data of all files.
+	 */
+	protected MetadataIndex metadata() {
+		MetadataIndex index = metadata;
+		if (index == null) {
+			metadata = index = MetadataIndex.forRoot(root);
+		}
+		return index;
 	}
 
 	/**
 	 * Returns the path of the properties file with meta-data about the given
 	 * file denoted by <code>path</code>.
+	 * <p>
+	 * These files have been used by earlier versions and are only read for
+	 * migrating their contents to the meta-data index.
 	 * 
 	 * @param path
 	 *            The path which should be described with meta-data.
@@ -118,7 +277,46 @@ public class FileStore {
 	 */
 	protected Path metaDataPath(Path path) {
 		return path.resolveSibling(path.getFileName().toString()
-				+ ".properties");
+				+ MetadataIndex.PROPERTIES_SUFFIX);
+	}
+
+	/**
+	 * Returns the path of the backup that is created for a properties file
+	 * when its contents are migrated to the meta-data index.
+	 * 
+	 * @param path
+	 *            The path which is described by the properties file.
+	 * @return The path of the backup file.
+	 */
+	protected Path metaDataBackupPath(Path path) {
+		return path.resolveSibling(metaDataPath(path).getFileName()
+				+ MetadataIndex.BACKUP_SUFFIX);
+	}
+
+	/**
+	 * Returns the path of the chunk manifest for the given file denoted by
+	 * <code>path</code>.
+	 * 
+	 * @param path
+	 *            The path of a blob.
+	 * @return The path of a chunk manifest.
+	 */
+	protected Path manifestPath(Path path) {
+		return path.resolveSibling(path.getFileName().toString()
+				+ MANIFEST_SUFFIX);
+	}
+
+	/**
+	 * Returns the chunk manifest for the given <code>key</code>.
+	 * 
+	 * @param key
+	 *            Key of the file.
+	 * @return The manifest or <code>null</code> if the file is not chunked.
+	 */
+	ChunkManifest readManifest(String key) throws IOException {
+		Path manifestPath = manifestPath(pathForKey(key));
+		return Files.exists(manifestPath) ? ChunkManifest.read(manifestPath)
+				: null;
 	}
 
 	/**
@@ -131,7 +329,94 @@ public class FileStore {
 	 *         exist or an error has occurred.
 	 */
 	public InputStream openStream(String key) throws IOException {
-		return new BufferedInputStream(Files.newInputStream(pathForKey(key)));
+		ChunkManifest manifest = readManifest(key);
+		if (manifest == null) {
+			return new BufferedInputStream(Files.newInputStream(pathForKey(key)));
+		}
+		// reassemble chunks, each chunk is opened on demand
+		Iterator<ChunkManifest.Chunk> chunks = manifest.chunks.iterator();
+		try {
+			return new BufferedInputStream(new SequenceInputStream(
+					new Enumeration<InputStream>() {
+						@Override
+						public boolean hasMoreElements() {
+							return chunks.hasNext();
+						}
+
+						@Override
+						public InputStream nextElement() {
+							try {
+								return Files.newInputStream(chunkPath(chunks
+										.next().key));
+							} catch (IOException e) {
+								throw new UncheckedIOException(e);
+							}
+						}
+					}));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Transfers a region of the file associated with the given
+	 * <code>key</code> to a channel.
+	 * <p>
+	 * The data is directly transferred from the file system to the target
+	 * channel, if supported by the platform, and is never fully buffered in
+	 * memory.
+	 * 
+	 * @param key
+	 *            Key of the file.
+	 * @param position
+	 *            The position of the first byte that should be transferred.
+	 * @param count
+	 *            The maximum number of bytes that should be transferred.
+	 * @param target
+	 *            The target channel.
+	 * @return The number of transferred bytes.
+	 */
+	public long transferTo(String key, long position, long count,
+			WritableByteChannel target) throws IOException {
+		ChunkManifest manifest = readManifest(key);
+		if (manifest == null) {
+			return transferFile(pathForKey(key), position, count, target);
+		}
+		long end = position + count;
+		long offset = 0;
+		long transferred = 0;
+		for (ChunkManifest.Chunk chunk : manifest.chunks) {
+			long chunkEnd = offset + chunk.length;
+			if (chunkEnd > position) {
+				long start = Math.max(position, offset) - offset;
+				long length = Math.min(end, chunkEnd) - offset - start;
+				transferred += transferFile(chunkPath(chunk.key), start,
+						length, target);
+			}
+			offset = chunkEnd;
+			if (offset >= end) {
+				break;
+			}
+		}
+		return transferred;
+	}
+
+	private long transferFile(Path path, long position, long count,
+			WritableByteChannel target) throws IOException {
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ)) {
+			long transferred = 0;
+			while (transferred < count) {
+				long n = channel.transferTo(position + transferred, count
+						- transferred, target);
+				if (n <= 0) {
+					// end of file has been reached
+					break;
+				}
+				transferred += n;
+			}
+			return transferred;
+		}
 	}
 
 	/**
@@ -143,12 +428,35 @@ public class FileStore {
 	 * @return A file object for storing the content.
 	 */
 	protected Path pathForKey(String key) {
+		return pathForKey(root, key);
+	}
+
+	/**
+	 * Returns a path object for storing a chunk with the given
+	 * <code>key</code>.
+	 * 
+	 * @param key
+	 *            The key of a chunk.
+	 * @return A file object for storing the chunk.
+	 */
+	protected Path chunkPath(String key) {
+		return pathForKey(chunksDir(), key);
+	}
+
+	/**
+	 * Returns the root directory of all chunks.
+	 */
+	Path chunksDir() {
+		return root.resolve(CHUNKS_DIR);
+	}
+
+	private Path pathForKey(Path base, String key) {
 		Matcher m = KEY_PATTERN.matcher(key);
 		if (!m.matches()) {
 			throw new IllegalArgumentException("Invalid key: " + key);
 		}
 		// split key into 3 folders and one file name
-		Path dir = root.resolve(m.group(1));
+		Path dir = base.resolve(m.group(1));
 		String hashSuffix = m.group(2);
 		for (int i = 0; i < DIR_LEVELS - 1; i++) {
 			int start = i * 2;
@@ -169,11 +477,28 @@ public class FileStore {
 	 */
 	public void setProperties(String key, Properties properties)
 			throws IOException {
-		Path metaPath = metaDataPath(pathForKey(key));
-		// override with existing properties
-		properties.putAll(getProperties(key));
-		properties.store(
-				new BufferedOutputStream(Files.newOutputStream(metaPath)), "");
+		setProperties(Collections.singletonMap(key, properties));
+	}
+
+	/**
+	 * Store meta-data for multiple objects with a single write to the
+	 * meta-data index.
+	 * 
+	 * @param properties
+	 *            Meta-data for stored objects, indexed by their keys.
+	 * @throws IOException
+	 *             If meta-data could not be stored.
+	 */
+	public void setProperties(Map<String, Properties> properties)
+			throws IOException {
+		MetadataIndex metadata = metadata();
+		synchronized (metadata) {
+			for (Map.Entry<String, Properties> entry : properties.entrySet()) {
+				// override with existing properties
+				entry.getValue().putAll(metadata.get(entry.getKey()));
+			}
+			metadata.putAll(properties);
+		}
 	}
 
 	/**
@@ -184,7 +509,8 @@ public class FileStore {
 	 * @return The size of the file or <code>0</code> if it does not exists.
 	 */
 	public long size(String key) throws IOException {
-		return Files.size(pathForKey(key));
+		ChunkManifest manifest = readManifest(key);
+		return manifest != null ? manifest.size : Files.size(pathForKey(key));
 	}
 
 	/**
@@ -192,31 +518,175 @@ public class FileStore {
 	 * 
 	 * @param data
 	 *            The data that should be stored.
-	 * @param extension
-	 *            The file extension for the data.
 	 * @return A key for the stored file.
 	 */
 	public String store(byte[] data) throws IOException {
-		String key;
+		return store(new ByteArrayInputStream(data));
+	}
+
+	/**
+	 * Stores the contents of an input stream.
+	 * <p>
+	 * The contents are hashed while they are written to a temporary file which
+	 * is then atomically moved to its final location. The stream is read until
+	 * its end but not closed.
+	 * 
+	 * @param in
+	 *            The stream whose contents should be stored.
+	 * @return A key for the stored file.
+	 */
+	public String store(InputStream in) throws IOException {
+		return store(Channels.newChannel(in));
+	}
+
+	/**
+	 * Stores the contents of a channel.
+	 * <p>
+	 * The contents are hashed while they are written to a temporary file which
+	 * is then atomically moved to its final location. The channel is read
+	 * until its end but not closed.
+	 * 
+	 * @param in
+	 *            The channel whose contents should be stored.
+	 * @return A key for the stored file.
+	 */
+	public String store(ReadableByteChannel in) throws IOException {
+		if (chunked) {
+			return storeChunked(in);
+		}
+		MessageDigest digest = newDigest();
+		Files.createDirectories(root);
+		Path tmp = Files.createTempFile(root, TMP_PREFIX, ".tmp");
 		try {
-			key = computeKey(new ByteArrayInputStream(data), data.length);
-		} catch (Exception e) {
-			throw new IOException("Unable to compute hash for data.", e);
+			try (FileChannel out = FileChannel.open(tmp,
+					StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				while (in.read(buffer) != -1) {
+					buffer.flip();
+					digest.update(buffer.array(), 0, buffer.limit());
+					while (buffer.hasRemaining()) {
+						out.write(buffer);
+					}
+					buffer.clear();
+				}
+			}
+			String key = createKey(digest);
+			moveToStore(tmp, key);
+			return key;
+		} finally {
+			Files.deleteIfExists(tmp);
 		}
-		Path target = pathForKey(key);
-		if (Files.exists(target)) {
-			// assume that contents are identical
+	}
+
+	private String storeChunked(ReadableByteChannel in) throws IOException {
+		MessageDigest digest = newDigest();
+		Chunker chunker = new Chunker();
+		ChunkManifest manifest = new ChunkManifest();
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (in.read(buffer) != -1) {
+			buffer.flip();
+			byte[] data = buffer.array();
+			int limit = buffer.limit();
+			digest.update(data, 0, limit);
+			for (int i = 0; i < limit; i++) {
+				if (chunker.add(data[i])) {
+					manifest.add(storeChunk(chunker), chunker.length);
+					chunker.reset();
+				}
+			}
+			buffer.clear();
+		}
+		String key = createKey(digest);
+		if (touchIfExists(key)) {
 			return key;
 		}
-		Files.createDirectories(target.getParent());
-		try (OutputStream os = Files.newOutputStream(target)) {
-			os.write(data, 0, data.length);
+		if (manifest.chunks.isEmpty()) {
+			// blobs that consist of a single chunk are stored as a whole
+			Path tmp = writeTemp(chunker.buffer, chunker.length);
+			try {
+				moveToStore(tmp, key);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+			return key;
+		}
+		if (chunker.length > 0) {
+			manifest.add(storeChunk(chunker), chunker.length);
+		}
+		Path tmp = Files.createTempFile(root, TMP_PREFIX, ".tmp");
+		try {
+			manifest.write(tmp);
+			move(tmp, manifestPath(pathForKey(key)));
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		return key;
+	}
+
+	private String storeChunk(Chunker chunker) throws IOException {
+		String key = chunkKey(chunker.buffer, chunker.length);
+		Path target = chunkPath(key);
+		boolean exists;
+		synchronized (lockFor(key)) {
+			exists = Files.exists(target);
+			if (exists) {
+				// protect the chunk from being collected
+				touch(target);
+			}
+		}
+		if (!exists) {
+			Path tmp = writeTemp(chunker.buffer, chunker.length);
+			try {
+				move(tmp, target);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
 		}
 		return key;
 	}
 
+	/**
+	 * Computes the key of a chunk.
+	 * <p>
+	 * Chunks are small and completely held in memory, so MurmurHash3 is
+	 * computed directly instead of using the parallel {@link TreeDigest}
+	 * which is only useful for whole blobs.
+	 */
+	private String chunkKey(byte[] data, int length) throws IOException {
+		if (MURMUR3.equals(algorithm)) {
+			long[] hash = MurmurHash3.hash128x64(data, 0, length, 0);
+			byte[] digest = ByteBuffer.allocate(TreeDigest.HASH_LENGTH)
+					.putLong(hash[0]).putLong(hash[1]).array();
+			return new StringBuilder(algorithm).append("-")
+					.append(Hex.encodeHex(digest)).toString();
+		}
+		MessageDigest digest = newDigest();
+		digest.update(data, 0, length);
+		return createKey(digest);
+	}
+
+	private Path writeTemp(byte[] data, int length) throws IOException {
+		Files.createDirectories(root);
+		Path tmp = Files.createTempFile(root, TMP_PREFIX, ".tmp");
+		try (OutputStream out = Files.newOutputStream(tmp)) {
+			out.write(data, 0, length);
+		}
+		return tmp;
+	}
+
+	private MessageDigest newDigest() throws IOException {
+		try {
+			return createDigest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("Unable to compute hash for data.", e);
+		}
+	}
+
 	/**
 	 * Stores the contents of a file.
+	 * <p>
+	 * If <code>move</code> is <code>false</code> or the store is chunked then
+	 * the file is copied and hashed in a single pass.
 	 * 
 	 * @param file
 	 *            The file whose contents should be stored.
@@ -226,27 +696,114 @@ public class FileStore {
 	 * @return A key for the stored file.
 	 */
 	public String store(Path file, boolean move) throws IOException {
-		String key;
-		try {
-			key = computeKey(Files.newInputStream(file), Files.size(file));
-		} catch (Exception e) {
-			throw new IOException("Unable to compute hash for file: " + file, e);
+		if (move && !chunked) {
+			String key;
+			try {
+				key = computeKey(Files.newInputStream(file), Files.size(file));
+			} catch (Exception e) {
+				throw new IOException("Unable to compute hash for file: "
+						+ file, e);
+			}
+			try {
+				moveToStore(file, key);
+				return key;
+			} catch (IOException e) {
+				// ignore and try to copy file
+			}
 		}
-		Path target = pathForKey(key);
-		if (Files.exists(target)) {
+		try (FileChannel in = FileChannel.open(file)) {
+			return store(in);
+		}
+	}
+
+	/**
+	 * Moves a file to the location for the given <code>key</code>.
+	 * <p>
+	 * The file is left untouched if the store already contains the key.
+	 * 
+	 * @param file
+	 *            The file that should be moved.
+	 * @param key
+	 *            The key of the file's contents.
+	 */
+	protected void moveToStore(Path file, String key) throws IOException {
+		if (touchIfExists(key)) {
 			// assume that contents are identical
-			return key;
+			return;
 		}
-		Files.createDirectories(target.getParent());
-		if (move) {
+		move(file, pathForKey(key));
+	}
+
+	/**
+	 * Updates the modification time of an existing file to protect it from
+	 * being collected until it is referenced.
+	 */
+	private boolean touchIfExists(String key) {
+		synchronized (lockFor(key)) {
+			Path path = pathForKey(key);
+			if (!Files.exists(path)) {
+				path = manifestPath(path);
+				if (!Files.exists(path)) {
+					return false;
+				}
+			}
+			touch(path);
+			return true;
+		}
+	}
+
+	/**
+	 * Deletes the file of a blob, manifest or chunk unless it has been stored
+	 * or reused since the given time.
+	 * <p>
+	 * The check and the deletion are atomic with respect to the reuse of the
+	 * file by a concurrent store operation.
+	 * 
+	 * @param key
+	 *            The key of the blob or chunk.
+	 * @param file
+	 *            The file of the blob, its manifest or the chunk.
+	 * @param minModified
+	 *            The time in milliseconds before which the file must have
+	 *            been modified for being deleted.
+	 * @return <code>true</code> if the file has been deleted, else
+	 *         <code>false</code>
+	 */
+	boolean deleteIfNotModifiedSince(String key, Path file, long minModified)
+			throws IOException {
+		synchronized (lockFor(key)) {
 			try {
-				Files.move(file, target);
-				return key;
-			} catch (Exception e) {
-				// ignore and try to copy file
+				if (Files.getLastModifiedTime(file).toMillis() >= minModified) {
+					return false;
+				}
+			} catch (NoSuchFileException e) {
+				return false;
 			}
+			return Files.deleteIfExists(file);
+		}
+	}
+
+	private static Object lockFor(String key) {
+		return KEY_LOCKS[Math.floorMod(key.hashCode(), KEY_LOCKS.length)];
+	}
+
+	private void touch(Path path) {
+		try {
+			Files.setLastModifiedTime(path,
+					FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private void move(Path file, Path target) throws IOException {
+		Files.createDirectories(target.getParent());
+		try {
+			Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileAlreadyExistsException e) {
+			// stored concurrently, assume that contents are identical
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(file, target);
 		}
-		Files.copy(file, target);
-		return key;
 	}
-}
\ No newline at end of file
+}
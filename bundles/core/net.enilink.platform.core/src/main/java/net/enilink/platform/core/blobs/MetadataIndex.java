@@ -0,0 +1,357 @@
+package net.enilink.platform.core.blobs;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Index of the meta-data of all blobs within a {@link FileStore}.
+ * <p>
+ * The meta-data is kept in memory and persisted to an append-only log. Each
+ * line of the log contains a checksum, the key of a blob and its properties.
+ * Later lines replace earlier lines for the same key and lines with invalid
+ * checksums, e.g. from interrupted writes, are ignored. The log is compacted
+ * if it contains too many replaced lines.
+ * <p>
+ * The <code>.properties</code> files of earlier versions are imported into
+ * the log if it does not yet exist and are then renamed to
+ * <code>&lt;key&gt;.properties.bak</code>. For a roll back to an earlier
+ * version these backups have to be renamed to <code>.properties</code> again
+ * and <code>metadata.log</code> has to be deleted. Changes of meta-data after
+ * the migration are only contained in the log. The backups may be deleted
+ * once a roll back is no longer required.
+ */
+class MetadataIndex {
+	static final String LOG_FILE = "metadata.log";
+
+	static final String PROPERTIES_SUFFIX = ".properties";
+
+	static final String BACKUP_SUFFIX = ".bak";
+
+	/**
+	 * Minimum number of lines before the log is compacted.
+	 */
+	static final int MIN_COMPACT_LINES = 1000;
+
+	/**
+	 * The shared indexes of all root directories. An index is only kept in
+	 * memory while it is referenced by a {@link FileStore}.
+	 */
+	static final Map<Path, WeakReference<MetadataIndex>> INSTANCES = new HashMap<>();
+
+	final Path root;
+
+	final Path logFile;
+
+	Map<String, Properties> entries;
+
+	int lines;
+
+	MetadataIndex(Path root) {
+		this.root = root;
+		this.logFile = root.resolve(LOG_FILE);
+	}
+
+	/**
+	 * Returns the shared index for the given root directory.
+	 */
+	static MetadataIndex forRoot(Path root) {
+		Path normalized = root.toAbsolutePath().normalize();
+		synchronized (INSTANCES) {
+			WeakReference<MetadataIndex> ref = INSTANCES.get(normalized);
+			MetadataIndex index = ref != null ? ref.get() : null;
+			if (index == null) {
+				// forget indexes that are no longer used
+				INSTANCES.values().removeIf(r -> r.get() == null);
+				index = new MetadataIndex(normalized);
+				INSTANCES.put(normalized, new WeakReference<>(index));
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Returns a copy of the properties for the given key.
+	 */
+	synchronized Properties get(String key) throws IOException {
+		Properties properties = new Properties();
+		Properties existing = entries().get(key);
+		if (existing != null) {
+			properties.putAll(existing);
+		}
+		return properties;
+	}
+
+	/**
+	 * Returns a copy of all keys with properties.
+	 */
+	synchronized Set<String> keys() throws IOException {
+		return new HashSet<>(entries().keySet());
+	}
+
+	/**
+	 * Replaces the properties of multiple keys with a single write.
+	 */
+	synchronized void putAll(Map<String, Properties> properties)
+			throws IOException {
+		Map<String, Properties> entries = entries();
+		StringBuilder records = new StringBuilder();
+		for (Map.Entry<String, Properties> entry : properties.entrySet()) {
+			Properties copy = new Properties();
+			copy.putAll(entry.getValue());
+			appendRecord(records, entry.getKey(), copy);
+		}
+		append(records);
+		for (Map.Entry<String, Properties> entry : properties.entrySet()) {
+			Properties copy = new Properties();
+			copy.putAll(entry.getValue());
+			if (copy.isEmpty()) {
+				entries.remove(entry.getKey());
+			} else {
+				entries.put(entry.getKey(), copy);
+			}
+		}
+		lines += properties.size();
+		compactIfRequired();
+	}
+
+	/**
+	 * Removes the properties of the given key.
+	 */
+	synchronized void remove(String key) throws IOException {
+		if (entries().containsKey(key)) {
+			Map<String, Properties> removal = new HashMap<>();
+			removal.put(key, new Properties());
+			putAll(removal);
+		}
+	}
+
+	/**
+	 * Returns the loaded entries, loads or migrates them if required.
+	 */
+	Map<String, Properties> entries() throws IOException {
+		if (entries == null) {
+			if (Files.exists(logFile)) {
+				load();
+			} else {
+				migrate();
+			}
+		}
+		return entries;
+	}
+
+	void load() throws IOException {
+		Map<String, Properties> loaded = new HashMap<>();
+		byte[] data = Files.readAllBytes(logFile);
+		int start = 0;
+		int count = 0;
+		for (int i = 0; i < data.length; i++) {
+			if (data[i] == '\n') {
+				parseRecord(new String(data, start, i - start,
+						StandardCharsets.UTF_8), loaded);
+				count++;
+				start = i + 1;
+			}
+		}
+		if (start < data.length) {
+			// remove incomplete record of an interrupted write
+			try (FileChannel channel = FileChannel.open(logFile,
+					StandardOpenOption.WRITE)) {
+				channel.truncate(start);
+				channel.force(true);
+			}
+		}
+		entries = loaded;
+		lines = count;
+		compactIfRequired();
+	}
+
+	/**
+	 * Imports the meta-data from the <code>.properties</code> files that have
+	 * been used by earlier versions and renames these files to backups.
+	 */
+	void migrate() throws IOException {
+		Map<String, Properties> migrated = new HashMap<>();
+		List<Path> files = new ArrayList<>();
+		if (Files.isDirectory(root)) {
+			try (Stream<Path> paths = Files.walk(root)) {
+				paths.filter(path -> {
+					String name = path.getFileName().toString();
+					return name.endsWith(PROPERTIES_SUFFIX)
+							&& FileStore.KEY_PATTERN.matcher(
+									name.substring(0, name.length()
+											- PROPERTIES_SUFFIX.length()))
+									.matches() && Files.isRegularFile(path);
+				}).forEach(files::add);
+			}
+		}
+		for (Path file : files) {
+			String name = file.getFileName().toString();
+			Properties properties = new Properties();
+			try (InputStream in = new BufferedInputStream(
+					Files.newInputStream(file))) {
+				properties.load(in);
+			}
+			if (!properties.isEmpty()) {
+				migrated.put(name.substring(0, name.length()
+						- PROPERTIES_SUFFIX.length()), properties);
+			}
+		}
+		entries = migrated;
+		// also written if empty to mark the migration as finished
+		writeLog();
+		// keep the files as backups for a roll back
+		for (Path file : files) {
+			Files.move(file, file.resolveSibling(file.getFileName()
+					+ BACKUP_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	void compactIfRequired() throws IOException {
+		if (lines >= MIN_COMPACT_LINES && lines > 2 * entries.size()) {
+			writeLog();
+		}
+	}
+
+	/**
+	 * Atomically replaces the log with the current entries.
+	 */
+	void writeLog() throws IOException {
+		StringBuilder records = new StringBuilder();
+		for (Map.Entry<String, Properties> entry : entries.entrySet()) {
+			appendRecord(records, entry.getKey(), entry.getValue());
+		}
+		Files.createDirectories(root);
+		Path tmp = Files.createTempFile(root, LOG_FILE, ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(tmp,
+					StandardOpenOption.WRITE)) {
+				write(channel, records);
+			}
+			Files.move(tmp, logFile, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		lines = entries.size();
+	}
+
+	void append(CharSequence records) throws IOException {
+		Files.createDirectories(root);
+		try (FileChannel channel = FileChannel.open(logFile,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			write(channel, records);
+		}
+	}
+
+	static void write(FileChannel channel, CharSequence records)
+			throws IOException {
+		ByteBuffer buffer = StandardCharsets.UTF_8.encode(records.toString());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		channel.force(false);
+	}
+
+	static void appendRecord(StringBuilder records, String key,
+			Properties properties) {
+		StringBuilder record = new StringBuilder(key);
+		for (String name : properties.stringPropertyNames()) {
+			record.append('\t');
+			escape(record, name);
+			record.append('=');
+			escape(record, properties.getProperty(name));
+		}
+		records.append(Long.toHexString(checksum(record))).append('\t')
+				.append(record).append('\n');
+	}
+
+	static void parseRecord(String line, Map<String, Properties> entries) {
+		int separator = line.indexOf('\t');
+		if (separator < 0) {
+			return;
+		}
+		String record = line.substring(separator + 1);
+		try {
+			if (Long.parseLong(line.substring(0, separator), 16) != checksum(
+					record)) {
+				return;
+			}
+		} catch (NumberFormatException e) {
+			return;
+		}
+		String[] fields = record.split("\t");
+		Properties properties = new Properties();
+		for (int i = 1; i < fields.length; i++) {
+			StringBuilder name = new StringBuilder();
+			StringBuilder value = null;
+			String field = fields[i];
+			for (int j = 0; j < field.length(); j++) {
+				char c = field.charAt(j);
+				if (c == '=' && value == null) {
+					value = new StringBuilder();
+					continue;
+				}
+				if (c == '\\' && j + 1 < field.length()) {
+					c = field.charAt(++j);
+					c = c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+				}
+				(value != null ? value : name).append(c);
+			}
+			properties.setProperty(name.toString(), value != null ? value
+					.toString() : "");
+		}
+		if (properties.isEmpty()) {
+			entries.remove(fields[0]);
+		} else {
+			entries.put(fields[0], properties);
+		}
+	}
+
+	static void escape(StringBuilder sb, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '\t':
+				sb.append("\\t");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\\':
+			case '=':
+				sb.append('\\').append(c);
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+	}
+
+	static long checksum(CharSequence record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.toString().getBytes(StandardCharsets.UTF_8));
+		return crc.getValue();
+	}
+}
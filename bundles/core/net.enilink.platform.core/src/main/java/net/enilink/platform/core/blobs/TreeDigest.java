@@ -0,0 +1,117 @@
+package net.enilink.platform.core.blobs;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+/**
+ * Fast non-cryptographic digest that hashes blocks of data in parallel.
+ * <p>
+ * The data is split into blocks of {@link #BLOCK_SIZE} bytes which are hashed
+ * with the 128-bit variant of MurmurHash3. The digest is the MurmurHash3 of
+ * the concatenated block hashes followed by the total length.
+ */
+class TreeDigest extends MessageDigest {
+	static final int BLOCK_SIZE = 1024 * 1024;
+
+	static final int HASH_LENGTH = 16;
+
+	/**
+	 * Maximum number of blocks that are hashed concurrently.
+	 */
+	static final int MAX_PENDING = Math.max(2,
+			ForkJoinPool.getCommonPoolParallelism() * 2);
+
+	final List<CompletableFuture<long[]>> blockHashes = new ArrayList<>();
+
+	byte[] block;
+
+	int blockLength;
+
+	long length;
+
+	TreeDigest() {
+		super("MurmurHash3-128-Tree");
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		if (block == null) {
+			block = new byte[BLOCK_SIZE];
+		}
+		block[blockLength++] = input;
+		length++;
+		if (blockLength == BLOCK_SIZE) {
+			hashBlock();
+		}
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		while (len > 0) {
+			if (block == null) {
+				block = new byte[BLOCK_SIZE];
+			}
+			int n = Math.min(len, BLOCK_SIZE - blockLength);
+			System.arraycopy(input, offset, block, blockLength, n);
+			blockLength += n;
+			length += n;
+			offset += n;
+			len -= n;
+			if (blockLength == BLOCK_SIZE) {
+				hashBlock();
+			}
+		}
+	}
+
+	void hashBlock() {
+		final byte[] data = block == null ? new byte[0] : block;
+		final int dataLength = blockLength;
+		blockHashes.add(CompletableFuture.supplyAsync(() -> MurmurHash3
+				.hash128x64(data, 0, dataLength, 0)));
+		block = null;
+		blockLength = 0;
+		// limit the memory that is used by pending blocks
+		int pending = blockHashes.size() - MAX_PENDING;
+		if (pending >= 0) {
+			blockHashes.get(pending).join();
+		}
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return HASH_LENGTH;
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		if (blockLength > 0 || blockHashes.isEmpty()) {
+			hashBlock();
+		}
+		ByteBuffer hashes = ByteBuffer.allocate(blockHashes.size()
+				* HASH_LENGTH + Long.BYTES);
+		for (CompletableFuture<long[]> blockHash : blockHashes) {
+			long[] hash = blockHash.join();
+			hashes.putLong(hash[0]).putLong(hash[1]);
+		}
+		hashes.putLong(length);
+		long[] hash = MurmurHash3.hash128x64(hashes.array(), 0,
+				hashes.capacity(), 0);
+		engineReset();
+		return ByteBuffer.allocate(HASH_LENGTH).putLong(hash[0])
+				.putLong(hash[1]).array();
+	}
+
+	@Override
+	protected void engineReset() {
+		blockHashes.clear();
+		block = null;
+		blockLength = 0;
+		length = 0;
+	}
+}
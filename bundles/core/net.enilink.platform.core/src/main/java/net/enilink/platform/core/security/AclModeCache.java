@@ -0,0 +1,219 @@
+package net.enilink.platform.core.security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.platform.core.util.BoundedCache;
+import net.enilink.vocab.acl.WEBACL;
+import net.enilink.vocab.foaf.FOAF;
+import net.enilink.vocab.rdfs.RDFS;
+
+/**
+ * Bounded cache for the ACL modes of individual resources as computed by
+ * {@link SecurityUtil#QUERY_ACLMODE}.
+ * <p>
+ * The cache is shared by all data managers of a model set and hence survives
+ * single operations and requests. Entries are keyed by the queried contexts,
+ * the agent and the target resource. They expire after a configurable time
+ * and are evicted in least recently used order if the maximum size is
+ * exceeded.
+ */
+public class AclModeCache {
+	/**
+	 * Properties whose modification may change the result of
+	 * {@link SecurityUtil#QUERY_ACLMODE} for arbitrary resources.
+	 */
+	public static final Set<IReference> ACL_PROPERTIES = new HashSet<>(Arrays.asList(WEBACL.PROPERTY_AGENT,
+			WEBACL.PROPERTY_AGENTCLASS, WEBACL.PROPERTY_ACCESSTO, WEBACL.PROPERTY_ACCESSTOCLASS, WEBACL.PROPERTY_MODE,
+			WEBACL.PROPERTY_OWNER, FOAF.PROPERTY_MEMBER, RDFS.PROPERTY_SUBCLASSOF));
+
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+
+	static class Key {
+		final List<IReference> contexts;
+		final IReference agent;
+		final IReference resource;
+		final int hashCode;
+
+		Key(List<IReference> contexts, IReference agent, IReference resource) {
+			this.contexts = contexts;
+			this.agent = PermissionCache.normalize(agent);
+			this.resource = PermissionCache.normalize(resource);
+			this.hashCode = 31 * (31 * contexts.hashCode() + this.agent.hashCode()) + this.resource.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return resource.equals(other.resource) && agent.equals(other.agent) && contexts.equals(other.contexts);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	final BoundedCache<Key, Set<IReference>> entries;
+
+	final BoundedCache.Index<Key> keysByResource;
+
+	final BoundedCache.Index<Key> keysByAgent;
+
+	final BoundedCache.Index<Key> keysByContext;
+
+	final AtomicLong queries = new AtomicLong();
+
+	public AclModeCache() {
+		this(Integer.getInteger("net.enilink.security.aclModeCache.size", DEFAULT_MAXIMUM_SIZE),
+				Long.getLong("net.enilink.security.aclModeCache.ttl", DEFAULT_TTL));
+	}
+
+	/**
+	 * Creates a new ACL mode cache.
+	 *
+	 * @param maximumSize
+	 *            The maximum number of entries
+	 * @param ttl
+	 *            The time in milliseconds after which an entry expires
+	 */
+	public AclModeCache(int maximumSize, long ttl) {
+		this.entries = new BoundedCache<>(maximumSize, ttl);
+		this.keysByResource = entries.addIndex(key -> Collections.singleton(key.resource));
+		this.keysByAgent = entries.addIndex(key -> Collections.singleton(key.agent));
+		this.keysByContext = entries.addIndex(key -> key.contexts.stream().map(PermissionCache::normalize).toList());
+	}
+
+	/**
+	 * Returns the cached ACL modes of <code>agent</code> for
+	 * <code>resource</code> within the given contexts.
+	 *
+	 * @param contexts
+	 *            The contexts that were used to evaluate the ACLs
+	 * @param agent
+	 *            The agent identification
+	 * @param resource
+	 *            The target resource
+	 * @return The cached set of modes or <code>null</code> if no entry exists
+	 */
+	public Set<IReference> get(List<IReference> contexts, IReference agent, IReference resource) {
+		return entries.lookup(new Key(contexts, agent, resource));
+	}
+
+	/**
+	 * Stores the ACL modes of <code>agent</code> for <code>resource</code>
+	 * within the given contexts.
+	 *
+	 * @param contexts
+	 *            The contexts that were used to evaluate the ACLs
+	 * @param agent
+	 *            The agent identification
+	 * @param resource
+	 *            The target resource
+	 * @param modes
+	 *            The resulting ACL modes
+	 * @param generation
+	 *            The value of {@link #getGeneration()} before the modes were
+	 *            computed, the modes are not stored if the cache has been
+	 *            invalidated in the meantime
+	 */
+	public void put(List<IReference> contexts, IReference agent, IReference resource, Set<IReference> modes,
+			long generation) {
+		entries.put(new Key(contexts, agent, resource), modes, generation);
+	}
+
+	/**
+	 * Returns a counter that changes whenever entries of this cache are
+	 * invalidated.
+	 */
+	public long getGeneration() {
+		return entries.getGeneration();
+	}
+
+	/**
+	 * Removes all entries for the given target resource.
+	 *
+	 * @param resource
+	 *            The target resource
+	 */
+	public void invalidateResource(IReference resource) {
+		entries.invalidate(keysByResource, PermissionCache.normalize(resource));
+	}
+
+	/**
+	 * Removes all entries for the given agent.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 */
+	public void invalidateAgent(IReference agent) {
+		entries.invalidate(keysByAgent, PermissionCache.normalize(agent));
+	}
+
+	/**
+	 * Removes all entries whose ACL modes have been computed from the given
+	 * context.
+	 *
+	 * @param context
+	 *            The context whose statements have been changed
+	 */
+	public void invalidateContext(IReference context) {
+		entries.invalidate(keysByContext, PermissionCache.normalize(context));
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns the number of cached entries.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of successful lookups.
+	 */
+	public long getHitCount() {
+		return entries.getHitCount();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a cached entry.
+	 */
+	public long getMissCount() {
+		return entries.getMissCount();
+	}
+
+	/**
+	 * Records that an ACL query has been evaluated.
+	 */
+	public void recordQuery() {
+		queries.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of evaluated ACL queries.
+	 */
+	public long getQueryCount() {
+		return queries.get();
+	}
+}
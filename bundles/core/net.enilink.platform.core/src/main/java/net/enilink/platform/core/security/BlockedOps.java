@@ -0,0 +1,160 @@
+package net.enilink.platform.core.security;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.platform.core.security.SecureDataManager.Op;
+
+/**
+ * Operations that are blocked until the access mode of their subject-resource
+ * is known.
+ * <p>
+ * If more than <code>threshold</code> operations are held in memory then all
+ * of them are moved to an {@link OpFile}. Only the file offsets per subject and
+ * the number of references to each blocked resource are kept in memory.
+ */
+class BlockedOps implements Closeable {
+	final int threshold;
+
+	final Map<IReference, List<Op>> memory = new HashMap<>();
+
+	int memoryCount;
+
+	/**
+	 * File offsets of spilled operations per subject. The first element of each
+	 * array contains the number of offsets.
+	 */
+	final Map<IReference, long[]> spilled = new HashMap<>();
+
+	/**
+	 * Number of blocked operations that reference a resource as object.
+	 */
+	final Map<IReference, Integer> references = new HashMap<>();
+
+	OpFile file;
+
+	BlockedOps(int threshold) {
+		this.threshold = threshold;
+	}
+
+	void add(Op op) {
+		IReference s = op.stmt.getSubject();
+		memory.computeIfAbsent(s, k -> new ArrayList<>(2)).add(op);
+		memoryCount++;
+		Object o = op.stmt.getObject();
+		if (o instanceof IReference && !s.equals(o)) {
+			references.merge(PermissionCache.normalize((IReference) o), 1, Integer::sum);
+		}
+		if (memoryCount > threshold) {
+			spill();
+		}
+	}
+
+	void spill() {
+		if (file == null) {
+			file = new OpFile();
+		}
+		for (Map.Entry<IReference, List<Op>> entry : memory.entrySet()) {
+			long[] offsets = spilled.get(entry.getKey());
+			for (Op op : entry.getValue()) {
+				offsets = append(offsets, file.append(op));
+			}
+			spilled.put(entry.getKey(), offsets);
+		}
+		memory.clear();
+		memoryCount = 0;
+	}
+
+	static long[] append(long[] offsets, long offset) {
+		if (offsets == null) {
+			offsets = new long[3];
+		}
+		int size = (int) offsets[0];
+		if (size + 1 >= offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		offsets[size + 1] = offset;
+		offsets[0] = size + 1;
+		return offsets;
+	}
+
+	boolean isEmpty() {
+		return memory.isEmpty() && spilled.isEmpty();
+	}
+
+	/**
+	 * Removes and returns all operations for the given subject.
+	 *
+	 * @param subject
+	 *            The subject of the operations
+	 * @return The blocked operations or <code>null</code> if no operation was
+	 *         blocked on <code>subject</code>
+	 */
+	Collection<Op> remove(IReference subject) {
+		List<Op> ops = memory.remove(subject);
+		if (ops != null) {
+			memoryCount -= ops.size();
+		}
+		long[] offsets = spilled.remove(subject);
+		if (offsets != null) {
+			if (ops == null) {
+				ops = new ArrayList<>((int) offsets[0]);
+			}
+			for (int i = 1; i <= offsets[0]; i++) {
+				ops.add(file.read(offsets[i]));
+			}
+			if (spilled.isEmpty()) {
+				file.reset();
+			}
+		}
+		if (ops != null) {
+			for (Op op : ops) {
+				Object o = op.stmt.getObject();
+				if (o instanceof IReference && !subject.equals(o)) {
+					references.computeIfPresent(PermissionCache.normalize((IReference) o),
+							(k, count) -> count > 1 ? count - 1 : null);
+				}
+			}
+		}
+		return ops;
+	}
+
+	/**
+	 * Returns the subjects of blocked operations that are not referenced by
+	 * other blocked operations.
+	 */
+	Set<IReference> roots() {
+		Set<IReference> roots = new HashSet<>();
+		for (IReference s : memory.keySet()) {
+			if (!references.containsKey(PermissionCache.normalize(s))) {
+				roots.add(s);
+			}
+		}
+		for (IReference s : spilled.keySet()) {
+			if (!references.containsKey(PermissionCache.normalize(s))) {
+				roots.add(s);
+			}
+		}
+		return roots;
+	}
+
+	@Override
+	public void close() {
+		memory.clear();
+		spilled.clear();
+		references.clear();
+		memoryCount = 0;
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+}
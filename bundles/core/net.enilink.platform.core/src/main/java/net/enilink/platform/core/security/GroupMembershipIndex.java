@@ -0,0 +1,217 @@
+package net.enilink.platform.core.security;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import net.enilink.commons.iterator.IExtendedIterator;
+import net.enilink.komma.core.IEntityManager;
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.IStatement;
+import net.enilink.komma.core.URI;
+import net.enilink.vocab.foaf.FOAF;
+import net.enilink.vocab.rdf.RDF;
+import net.enilink.vocab.rdfs.RDFS;
+
+/**
+ * In-memory index of the transitive group memberships and agent classes
+ * that are stored within the meta data of a model set.
+ * <p>
+ * The index replaces the evaluation of the property paths
+ * <code>foaf:member*</code> and <code>rdfs:subClassOf*</code> for agents
+ * with simple set lookups. It is initially filled by {@link #load} and then
+ * incrementally maintained by {@link #statementChanged}.
+ */
+public class GroupMembershipIndex {
+	final Map<IReference, Set<IReference>> groupsByMember = new HashMap<>();
+
+	final Map<IReference, Set<IReference>> superClasses = new HashMap<>();
+
+	final Map<IReference, Set<IReference>> typesByAgent = new HashMap<>();
+
+	final Map<IReference, Set<IReference>> groupClosures = new HashMap<>();
+
+	final Map<IReference, Set<IReference>> classClosures = new HashMap<>();
+
+	volatile boolean loaded;
+
+	/**
+	 * Returns a key for the given reference that is independent of the
+	 * reference's implementation.
+	 */
+	static IReference key(IReference reference) {
+		URI uri = reference.getURI();
+		return uri != null ? uri : reference;
+	}
+
+	static void add(Map<IReference, Set<IReference>> map, IReference s, IReference o) {
+		map.computeIfAbsent(key(s), k -> new HashSet<>()).add(key(o));
+	}
+
+	static void remove(Map<IReference, Set<IReference>> map, IReference s, IReference o) {
+		Set<IReference> values = map.get(key(s));
+		if (values != null && values.remove(key(o)) && values.isEmpty()) {
+			map.remove(key(s));
+		}
+	}
+
+	static Set<IReference> closure(Map<IReference, Set<IReference>> map, Set<IReference> start) {
+		Set<IReference> result = new HashSet<>(start);
+		Queue<IReference> queue = new LinkedList<>(start);
+		while (!queue.isEmpty()) {
+			Set<IReference> next = map.get(queue.remove());
+			if (next != null) {
+				for (IReference ref : next) {
+					if (result.add(ref)) {
+						queue.add(ref);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * (Re-)Initializes this index from the statements of the given entity
+	 * manager.
+	 *
+	 * @param em
+	 *            The entity manager for the meta data
+	 */
+	public synchronized void load(IEntityManager em) {
+		groupsByMember.clear();
+		superClasses.clear();
+		typesByAgent.clear();
+		groupClosures.clear();
+		classClosures.clear();
+		try (IExtendedIterator<IStatement> stmts = em.match(null, FOAF.PROPERTY_MEMBER, null)) {
+			for (IStatement stmt : stmts) {
+				if (stmt.getObject() instanceof IReference member) {
+					add(groupsByMember, member, stmt.getSubject());
+				}
+			}
+		}
+		try (IExtendedIterator<IStatement> stmts = em.match(null, RDFS.PROPERTY_SUBCLASSOF, null)) {
+			for (IStatement stmt : stmts) {
+				if (stmt.getObject() instanceof IReference superClass) {
+					add(superClasses, stmt.getSubject(), superClass);
+				}
+			}
+		}
+		loaded = true;
+	}
+
+	/**
+	 * Returns <code>true</code> if this index has been initialized by
+	 * {@link #load(IEntityManager)}.
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+	/**
+	 * Updates this index for an added or removed meta data statement.
+	 *
+	 * @param stmt
+	 *            The changed statement
+	 * @param added
+	 *            <code>true</code> if the statement was added,
+	 *            <code>false</code> if it was removed
+	 */
+	public synchronized void statementChanged(IStatement stmt, boolean added) {
+		IReference p = stmt.getPredicate();
+		if (!(stmt.getObject() instanceof IReference o)) {
+			return;
+		}
+		if (FOAF.PROPERTY_MEMBER.equals(p)) {
+			if (added) {
+				add(groupsByMember, o, stmt.getSubject());
+			} else {
+				remove(groupsByMember, o, stmt.getSubject());
+			}
+			groupClosures.clear();
+		} else if (RDFS.PROPERTY_SUBCLASSOF.equals(p)) {
+			if (added) {
+				add(superClasses, stmt.getSubject(), o);
+			} else {
+				remove(superClasses, stmt.getSubject(), o);
+			}
+			classClosures.clear();
+		} else if (RDF.PROPERTY_TYPE.equals(p)) {
+			IReference s = key(stmt.getSubject());
+			// types are loaded again on demand
+			typesByAgent.remove(s);
+			classClosures.remove(s);
+		}
+	}
+
+	/**
+	 * Returns all groups that contain the given agent either directly or via
+	 * nested groups.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 * @return The set of groups, not including the agent itself
+	 */
+	public synchronized Set<IReference> getGroups(IReference agent) {
+		IReference agentKey = key(agent);
+		Set<IReference> groups = groupClosures.get(agentKey);
+		if (groups == null) {
+			groups = closure(groupsByMember, Collections.singleton(agentKey));
+			groups.remove(agentKey);
+			groups = Collections.unmodifiableSet(groups);
+			groupClosures.put(agentKey, groups);
+		}
+		return groups;
+	}
+
+	/**
+	 * Returns all classes of the given agent including their super classes.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 * @param em
+	 *            The entity manager for the meta data that is used to
+	 *            retrieve the agent's direct types
+	 * @return The set of agent classes
+	 */
+	public synchronized Set<IReference> getAgentClasses(IReference agent, IEntityManager em) {
+		IReference agentKey = key(agent);
+		Set<IReference> classes = classClosures.get(agentKey);
+		if (classes == null) {
+			Set<IReference> types = typesByAgent.get(agentKey);
+			if (types == null) {
+				types = new HashSet<>();
+				try (IExtendedIterator<IStatement> stmts = em.match(agent, RDF.PROPERTY_TYPE, null)) {
+					for (IStatement stmt : stmts) {
+						if (stmt.getObject() instanceof IReference type) {
+							types.add(key(type));
+						}
+					}
+				}
+				typesByAgent.put(agentKey, types);
+			}
+			classes = Collections.unmodifiableSet(closure(superClasses, types));
+			classClosures.put(agentKey, classes);
+		}
+		return classes;
+	}
+
+	/**
+	 * Determines if the given agent is a transitive member of a group.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 * @param group
+	 *            The group
+	 * @return <code>true</code> if <code>agent</code> is equal to or a
+	 *         member of <code>group</code>, else <code>false</code>
+	 */
+	public boolean isMemberOf(IReference agent, IReference group) {
+		return key(agent).equals(key(group)) || getGroups(agent).contains(key(group));
+	}
+}
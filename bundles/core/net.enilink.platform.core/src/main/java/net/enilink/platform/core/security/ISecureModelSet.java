@@ -1,5 +1,7 @@
 package net.enilink.platform.core.security;
 
+import java.util.List;
+
 import net.enilink.komma.model.IModelSet;
 import net.enilink.komma.core.IReference;
 
@@ -31,4 +33,52 @@ public interface ISecureModelSet extends IModelSet {
 	 *         denied.
 	 */
 	IReference writeModeFor(IReference model, IReference agent);
+
+	/**
+	 * Returns the cache for ACL modes of resources within the models of this
+	 * set.
+	 * 
+	 * @return The shared ACL mode cache
+	 */
+	AclModeCache getAclModeCache();
+
+	/**
+	 * Returns the index of group memberships and agent classes that is
+	 * maintained for the meta data of this set.
+	 * 
+	 * @return The group membership index
+	 */
+	GroupMembershipIndex getMembershipIndex();
+
+	/**
+	 * Returns the cache for the results of {@link #isReadableBy} and
+	 * {@link #writeModeFor}.
+	 * 
+	 * @return The permission cache
+	 */
+	PermissionCache getPermissionCache();
+
+	/**
+	 * Returns the cache for the results of {@link #getVisibleModels}.
+	 * 
+	 * @return The visible models cache
+	 */
+	VisibleModelsCache getVisibleModelsCache();
+
+	/**
+	 * Returns the models of this set that are visible to an agent because it
+	 * is either their owner or allowed to read them.
+	 * <p>
+	 * The models are sorted by their URIs.
+	 * 
+	 * @param agent
+	 *            The agent identification
+	 * @param offset
+	 *            The index of the first model that should be returned
+	 * @param limit
+	 *            The maximum number of models or <code>-1</code> to return
+	 *            all models starting at <code>offset</code>
+	 * @return An unmodifiable list of model references
+	 */
+	List<IReference> getVisibleModels(IReference agent, int offset, int limit);
 }
\ No newline at end of file
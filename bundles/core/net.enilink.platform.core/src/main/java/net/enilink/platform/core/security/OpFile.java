@@ -0,0 +1,298 @@
+package net.enilink.platform.core.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.enilink.komma.core.BlankNode;
+import net.enilink.komma.core.ILiteral;
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.IStatementPattern;
+import net.enilink.komma.core.KommaException;
+import net.enilink.komma.core.Literal;
+import net.enilink.komma.core.Statement;
+import net.enilink.komma.core.StatementPattern;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.platform.core.security.SecureDataManager.AddOp;
+import net.enilink.platform.core.security.SecureDataManager.Op;
+import net.enilink.platform.core.security.SecureDataManager.RemoveOp;
+import net.enilink.platform.core.security.SecureDataManager.WriteMode;
+
+/**
+ * Temporary file that stores serialized operations of a
+ * {@link SecureDataManager} to limit the required heap memory.
+ * <p>
+ * Records are appended to the file and can be read again by their offset.
+ * Each record is expected to be read at most once. Blank nodes are interned
+ * to ensure that operations which are read from the file refer to the same
+ * node objects as the original operations. An interned blank node is released
+ * as soon as all records that refer to it have been read.
+ */
+class OpFile implements Closeable {
+	/**
+	 * An interned blank node and the number of its occurrences within unread
+	 * records.
+	 */
+	static class InternedNode {
+		final IReference node;
+		int occurrences;
+
+		InternedNode(IReference node) {
+			this.node = node;
+		}
+	}
+
+	static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	static final byte NULL = 0, URI_VALUE = 1, BNODE_VALUE = 2, LITERAL_VALUE = 3;
+
+	final Path path;
+
+	final FileChannel channel;
+
+	final Map<String, InternedNode> blankNodes = new HashMap<>();
+
+	final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+	final DataOutputStream recordOut = new DataOutputStream(record);
+
+	final ByteArrayOutputStream writeBuffer = new ByteArrayOutputStream();
+
+	/**
+	 * File offset of the first byte within {@link #writeBuffer}.
+	 */
+	long writeBufferStart;
+
+	/**
+	 * Offset of the record following the last record that has been read.
+	 */
+	long nextOffset;
+
+	OpFile() {
+		try {
+			path = Files.createTempFile("enilink-ops-", ".tmp");
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE);
+		} catch (IOException e) {
+			throw new KommaException("Unable to create a temporary file for operations.", e);
+		}
+	}
+
+	/**
+	 * Appends an operation to this file.
+	 *
+	 * @param op
+	 *            The operation
+	 * @return The offset of the operation's record
+	 */
+	long append(Op op) {
+		try {
+			record.reset();
+			writeOp(recordOut, op);
+			long offset = writeBufferStart + writeBuffer.size();
+			DataOutputStream out = new DataOutputStream(writeBuffer);
+			out.writeInt(record.size());
+			record.writeTo(out);
+			if (writeBuffer.size() >= WRITE_BUFFER_SIZE) {
+				flush();
+			}
+			return offset;
+		} catch (IOException e) {
+			throw new KommaException("Unable to write operation to temporary file.", e);
+		}
+	}
+
+	/**
+	 * Returns the offset where the next record will be appended.
+	 */
+	long end() {
+		return writeBufferStart + writeBuffer.size();
+	}
+
+	/**
+	 * Reads the operation with the given offset.
+	 *
+	 * The offset of the following record is available as {@link #nextOffset}
+	 * afterwards.
+	 *
+	 * @param offset
+	 *            The offset of the operation's record
+	 * @return The operation
+	 */
+	Op read(long offset) {
+		try {
+			if (offset >= writeBufferStart) {
+				flush();
+			}
+			ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+			readFully(lengthBuffer, offset);
+			int length = lengthBuffer.getInt(0);
+			ByteBuffer data = ByteBuffer.allocate(length);
+			readFully(data, offset + 4);
+			nextOffset = offset + 4 + length;
+			return readOp(new DataInputStream(new ByteArrayInputStream(data.array())));
+		} catch (IOException e) {
+			throw new KommaException("Unable to read operation from temporary file.", e);
+		}
+	}
+
+	/**
+	 * Discards all records of this file.
+	 */
+	void reset() {
+		try {
+			blankNodes.clear();
+			writeBuffer.reset();
+			channel.truncate(0);
+			writeBufferStart = 0;
+			nextOffset = 0;
+		} catch (IOException e) {
+			throw new KommaException("Unable to truncate temporary file.", e);
+		}
+	}
+
+	void flush() throws IOException {
+		if (writeBuffer.size() > 0) {
+			ByteBuffer data = ByteBuffer.wrap(writeBuffer.toByteArray());
+			long position = writeBufferStart;
+			while (data.hasRemaining()) {
+				position += channel.write(data, position);
+			}
+			writeBufferStart = position;
+			writeBuffer.reset();
+		}
+	}
+
+	void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position);
+			if (n < 0) {
+				throw new IOException("Unexpected end of file: " + path);
+			}
+			position += n;
+		}
+	}
+
+	@Override
+	public void close() {
+		blankNodes.clear();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// ignore, file is deleted on close
+		}
+	}
+
+	void writeOp(DataOutputStream out, Op op) throws IOException {
+		IStatementPattern stmt = op.stmt;
+		out.writeBoolean(op.isAdd());
+		out.writeByte(op.mode.ordinal());
+		writeValue(out, stmt.getSubject());
+		writeValue(out, stmt.getPredicate());
+		writeValue(out, stmt.getObject());
+		writeValue(out, stmt.getContext());
+	}
+
+	Op readOp(DataInputStream in) throws IOException {
+		boolean isAdd = in.readBoolean();
+		WriteMode mode = WriteMode.values()[in.readByte()];
+		IReference s = (IReference) readValue(in);
+		IReference p = (IReference) readValue(in);
+		Object o = readValue(in);
+		IReference ctx = (IReference) readValue(in);
+		Op op;
+		if (isAdd) {
+			op = new AddOp(new Statement(s, p, o, ctx));
+		} else {
+			op = new RemoveOp(new StatementPattern(s, p, o, ctx));
+		}
+		op.mode = mode;
+		return op;
+	}
+
+	void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof IReference ref) {
+			URI uri = ref.getURI();
+			if (uri != null) {
+				out.writeByte(URI_VALUE);
+				out.writeUTF(uri.toString());
+			} else {
+				String id = ref.toString();
+				blankNodes.computeIfAbsent(id, k -> new InternedNode(ref)).occurrences++;
+				out.writeByte(BNODE_VALUE);
+				out.writeUTF(id);
+			}
+		} else if (value instanceof ILiteral literal) {
+			out.writeByte(LITERAL_VALUE);
+			writeString(out, literal.getLabel());
+			writeString(out, literal.getDatatype() == null ? null : literal.getDatatype().toString());
+			writeString(out, literal.getLanguage());
+		} else {
+			throw new KommaException("Unsupported value: " + value);
+		}
+	}
+
+	Object readValue(DataInputStream in) throws IOException {
+		switch (in.readByte()) {
+		case URI_VALUE:
+			return URIs.createURI(in.readUTF());
+		case BNODE_VALUE:
+			String id = in.readUTF();
+			InternedNode interned = blankNodes.get(id);
+			if (interned == null) {
+				return new BlankNode(id);
+			}
+			if (--interned.occurrences == 0) {
+				// all records referring to the node have been read
+				blankNodes.remove(id);
+			}
+			return interned.node;
+		case LITERAL_VALUE:
+			String label = readString(in);
+			String datatype = readString(in);
+			String language = readString(in);
+			if (language != null) {
+				return new Literal(label, language);
+			}
+			URI datatypeUri = datatype == null ? null : URIs.createURI(datatype);
+			return new Literal(label, datatypeUri);
+		default:
+			return null;
+		}
+	}
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+		} else {
+			// writeUTF is limited to 64 KB
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,102 @@
+package net.enilink.platform.core.security;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+
+import net.enilink.commons.iterator.IExtendedIterator;
+import net.enilink.commons.iterator.NiceIterator;
+import net.enilink.platform.core.security.SecureDataManager.Op;
+
+/**
+ * FIFO queue of operations that keeps at most <code>threshold</code>
+ * operations in memory and appends all further operations to an
+ * {@link OpFile}.
+ */
+class OpQueue implements Closeable {
+	final int threshold;
+
+	final Queue<Op> memory = new ArrayDeque<>();
+
+	OpFile file;
+
+	long readOffset;
+
+	long spilledCount;
+
+	OpQueue(int threshold) {
+		this.threshold = threshold;
+	}
+
+	void add(Op op) {
+		if (spilledCount == 0 && memory.size() < threshold) {
+			memory.add(op);
+		} else {
+			// keep FIFO order as long as spilled operations exist
+			if (file == null) {
+				file = new OpFile();
+			}
+			file.append(op);
+			spilledCount++;
+		}
+	}
+
+	boolean isEmpty() {
+		return memory.isEmpty() && spilledCount == 0;
+	}
+
+	Op remove() {
+		if (!memory.isEmpty()) {
+			return memory.remove();
+		}
+		if (spilledCount == 0) {
+			throw new NoSuchElementException();
+		}
+		Op op = file.read(readOffset);
+		readOffset = file.nextOffset;
+		if (--spilledCount == 0) {
+			// reuse the file for further operations
+			file.reset();
+			readOffset = 0;
+		}
+		return op;
+	}
+
+	/**
+	 * Returns an iterator that removes the operations from this queue. The
+	 * queue is closed when the iterator is closed.
+	 */
+	IExtendedIterator<Op> drain() {
+		return new NiceIterator<Op>() {
+			@Override
+			public boolean hasNext() {
+				return !isEmpty();
+			}
+
+			@Override
+			public Op next() {
+				if (isEmpty()) {
+					noElements("No more operations available.");
+				}
+				return OpQueue.this.remove();
+			}
+
+			@Override
+			public void close() {
+				OpQueue.this.close();
+			}
+		};
+	}
+
+	@Override
+	public void close() {
+		memory.clear();
+		spilledCount = 0;
+		readOffset = 0;
+		if (file != null) {
+			file.close();
+			file = null;
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package net.enilink.platform.core.security;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.platform.core.util.BoundedCache;
+
+/**
+ * Bounded cache for the read and write permissions of agents for the models
+ * of an {@link ISecureModelSet}.
+ * <p>
+ * Entries expire after a configurable time and are evicted in least recently
+ * used order if the maximum size is exceeded. They can be invalidated for
+ * single models or agents.
+ */
+public class PermissionCache {
+	public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(10);
+
+	static final String AUDIT_PREFIX = "enilink:audit:";
+
+	static class Key {
+		final IReference model;
+		final IReference agent;
+
+		Key(IReference model, IReference agent) {
+			this.model = normalize(model);
+			this.agent = normalize(agent);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return model.equals(other.model) && agent.equals(other.agent);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * model.hashCode() + agent.hashCode();
+		}
+	}
+
+	/**
+	 * The permissions of an agent for a model, guarded by the lock of the
+	 * {@link PermissionCache}.
+	 */
+	static class Entry {
+		Boolean readable;
+		IReference writeMode;
+		boolean writeModeKnown;
+	}
+
+	/**
+	 * Returns a key for the given reference that is independent of the
+	 * reference's implementation (e.g. URI or entity).
+	 */
+	static IReference normalize(IReference reference) {
+		URI uri = reference.getURI();
+		return uri != null ? uri : reference;
+	}
+
+	final BoundedCache<Key, Entry> entries;
+
+	final BoundedCache.Index<Key> keysByModel;
+
+	final BoundedCache.Index<Key> keysByAgent;
+
+	public PermissionCache() {
+		this(Integer.getInteger("net.enilink.security.permissionCache.size", DEFAULT_MAXIMUM_SIZE),
+				Long.getLong("net.enilink.security.permissionCache.ttl", DEFAULT_TTL));
+	}
+
+	/**
+	 * Creates a new permission cache.
+	 *
+	 * @param maximumSize
+	 *            The maximum number of (model, agent) entries
+	 * @param ttl
+	 *            The time in milliseconds after which an entry expires
+	 */
+	public PermissionCache(int maximumSize, long ttl) {
+		this.entries = new BoundedCache<>(maximumSize, ttl);
+		this.keysByModel = entries.addIndex(key -> Collections.singleton(key.model));
+		this.keysByAgent = entries.addIndex(key -> Collections.singleton(key.agent));
+	}
+
+	/**
+	 * Returns the cached read permission or computes it with the given
+	 * function.
+	 *
+	 * @param model
+	 *            The model reference
+	 * @param agent
+	 *            The agent identification
+	 * @param loader
+	 *            Function to compute the permission if it is not cached
+	 * @return <code>true</code> if the agent may read the model, else
+	 *         <code>false</code>
+	 */
+	public boolean isReadable(IReference model, IReference agent, BiPredicate<IReference, IReference> loader) {
+		long loadGeneration;
+		synchronized (this) {
+			Entry entry = entries.get(new Key(model, agent));
+			if (entry != null && entry.readable != null) {
+				entries.recordHit();
+				return entry.readable;
+			}
+			entries.recordMiss();
+			loadGeneration = entries.getGeneration();
+		}
+		boolean readable = loader.test(model, agent);
+		synchronized (this) {
+			Entry entry = entry(new Key(model, agent), loadGeneration);
+			if (entry != null) {
+				entry.readable = readable;
+			}
+		}
+		return readable;
+	}
+
+	/**
+	 * Returns the cached write mode or computes it with the given function.
+	 *
+	 * @param model
+	 *            The model reference
+	 * @param agent
+	 *            The agent identification
+	 * @param loader
+	 *            Function to compute the write mode if it is not cached
+	 * @return The write mode or <code>null</code> if writing is denied
+	 */
+	public IReference writeMode(IReference model, IReference agent,
+			BiFunction<IReference, IReference, IReference> loader) {
+		long loadGeneration;
+		synchronized (this) {
+			Entry entry = entries.get(new Key(model, agent));
+			if (entry != null && entry.writeModeKnown) {
+				entries.recordHit();
+				return entry.writeMode;
+			}
+			entries.recordMiss();
+			loadGeneration = entries.getGeneration();
+		}
+		IReference writeMode = loader.apply(model, agent);
+		synchronized (this) {
+			Entry entry = entry(new Key(model, agent), loadGeneration);
+			if (entry != null) {
+				entry.writeMode = writeMode;
+				entry.writeModeKnown = true;
+			}
+		}
+		return writeMode;
+	}
+
+	/**
+	 * Returns the time when the cached read permission of the given agent for
+	 * the given model expires.
+	 *
+	 * @param model
+	 *            The model reference
+	 * @param agent
+	 *            The agent identification
+	 * @return The expiration time in milliseconds or <code>0</code> if no read
+	 *         permission is cached
+	 */
+	public synchronized long getReadableExpiration(IReference model, IReference agent) {
+		Key key = new Key(model, agent);
+		Entry entry = entries.get(key);
+		return entry != null && entry.readable != null ? entries.getExpiration(key) : 0;
+	}
+
+	/**
+	 * Returns the entry for the given key and creates it if the cache has not
+	 * been invalidated since <code>generation</code>.
+	 */
+	Entry entry(Key key, long generation) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry();
+			if (!entries.put(key, entry, generation)) {
+				return null;
+			}
+		} else if (generation != entries.getGeneration()) {
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Removes all entries for the given model and its audit model.
+	 *
+	 * @param model
+	 *            The model reference
+	 */
+	public synchronized void invalidateModel(IReference model) {
+		model = normalize(model);
+		entries.invalidate(keysByModel, model);
+		URI uri = model.getURI();
+		if (uri != null && !uri.toString().startsWith(AUDIT_PREFIX)) {
+			// permissions of audit models are derived from their models
+			entries.invalidate(keysByModel, URIs.createURI(AUDIT_PREFIX + uri));
+		}
+	}
+
+	/**
+	 * Removes all entries for the given agent.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 */
+	public synchronized void invalidateAgent(IReference agent) {
+		entries.invalidate(keysByAgent, normalize(agent));
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns a counter that changes whenever entries of this cache are
+	 * invalidated.
+	 * <p>
+	 * This can be used to validate permissions that are derived from this
+	 * cache.
+	 */
+	public long getGeneration() {
+		return entries.getGeneration();
+	}
+
+	/**
+	 * Returns the number of cached entries.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of successful lookups.
+	 */
+	public long getHitCount() {
+		return entries.getHitCount();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a cached entry.
+	 */
+	public long getMissCount() {
+		return entries.getMissCount();
+	}
+
+	/**
+	 * Returns the number of entries that were removed because they expired or
+	 * the maximum size was exceeded.
+	 */
+	public long getEvictionCount() {
+		return entries.getEvictionCount();
+	}
+
+	/**
+	 * Returns the ratio of successful lookups to all lookups.
+	 */
+	public double getHitRatio() {
+		return entries.getHitRatio();
+	}
+}
@@ -3,10 +3,12 @@ package net.enilink.platform.core.security;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +32,7 @@ import net.enilink.komma.dm.IDataManagerQuery;
 import net.enilink.komma.em.DelegatingDataManager;
 import net.enilink.vocab.acl.ENILINKACL;
 import net.enilink.vocab.acl.WEBACL;
+import net.enilink.vocab.rdf.RDF;
 
 /**
  * Data manager for an {@link ISecureModelSet}.
@@ -119,12 +122,12 @@ public class SecureDataManager extends DelegatingDataManager {
 		 * Operations that are blocked until the access mode of their
 		 * subject-resource is known.
 		 */
-		final Map<IReference, Collection<Op>> blockedOps = new HashMap<>();
+		final BlockedOps blockedOps = new BlockedOps(SPILL_THRESHOLD);
 
 		/**
 		 * Queue of operations that are valid for execution.
 		 */
-		final Queue<Op> checkedOps = new LinkedList<>();
+		final OpQueue checkedOps = new OpQueue(SPILL_THRESHOLD);
 
 		final IReference[] contexts;
 
@@ -134,33 +137,183 @@ public class SecureDataManager extends DelegatingDataManager {
 
 		final Map<IReference, WriteMode> resourceModes = new HashMap<>();
 
+		/**
+		 * Key for the shared {@link AclModeCache}.
+		 */
+		final List<IReference> contextList;
+
+		/**
+		 * <code>true</code> if statements that may influence arbitrary ACL
+		 * decisions have been written by these operations.
+		 */
+		boolean aclsModified;
+
+		/**
+		 * Resources whose types have been changed by these operations.
+		 */
+		final Set<IReference> retypedResources = new HashSet<>();
+
 		// immediately capture the current user
 		final URI userId = SecurityUtil.getUser();
 
 		// TODO also respect readContexts for add operations
 		SecureOps(IReference[] contexts) {
 			this.contexts = contexts;
+			this.contextList = Arrays.asList(contexts);
 		}
 
 		/**
 		 * Executes a SPARQL query to retrieve the current ACL modes for the
 		 * given <code>resource</code>.
+		 * <p>
+		 * The results are shared with other operations through the model set's
+		 * {@link AclModeCache} as long as no ACL relevant statements have been
+		 * written by this set of operations.
 		 * 
 		 * @param resource
 		 *            The resource for which the ACL modes should be retrieved
 		 * @return A set of ACL modes
 		 */
 		Set<IReference> aclModes(IReference resource) {
+			AclModeCache cache = null;
+			long generation = 0;
+			if (!aclsModified && !retypedResources.contains(resource)) {
+				cache = modelSet.getAclModeCache();
+				generation = cache.getGeneration();
+				Set<IReference> modes = cache.get(contextList, userId,
+						resource);
+				if (modes != null) {
+					return modes;
+				}
+			}
 			IDataManagerQuery<?> aclQuery = createQuery(
-					SecurityUtil.QUERY_ACLMODE, "base:", false, contexts);
-			aclQuery.setParameter("target", resource).setParameter("user",
+					SecurityUtil.queryAclModes(modelSet, userId), "base:",
+					false, contexts);
+			modelSet.getAclModeCache().recordQuery();
+			aclQuery.setParameter("target", resource).setParameter("agent",
 					userId);
-			return aclQuery.evaluate().mapWith(new IMap<Object, IReference>() {
-				@Override
-				public IReference map(Object value) {
-					return (IReference) ((IBindings<?>) value).get("mode");
+			Set<IReference> modes = aclQuery.evaluate()
+					.mapWith(new IMap<Object, IReference>() {
+						@Override
+						public IReference map(Object value) {
+							return (IReference) ((IBindings<?>) value)
+									.get("mode");
+						}
+					}).toSet();
+			if (cache != null) {
+				cache.put(contextList, userId, resource,
+						Collections.unmodifiableSet(modes), generation);
+			}
+			return modes;
+		}
+
+		/**
+		 * Retrieves the ACL modes for multiple named resources with a single
+		 * query per batch and stores the resulting write modes.
+		 * 
+		 * @param resources
+		 *            The resources whose write modes should be determined
+		 */
+		void resolveWriteModes(Collection<IReference> resources) {
+			if (SecurityUtil.SYSTEM_USER.equals(userId)) {
+				// not required, see writeMode(IReference)
+				return;
+			}
+			AclModeCache cache = aclsModified ? null : modelSet
+					.getAclModeCache();
+			long generation = cache != null ? cache.getGeneration() : 0;
+			List<IReference> pending = new ArrayList<>();
+			for (IReference resource : resources) {
+				if (resource.getURI() == null || resource.equals(userId)
+						|| resourceModes.containsKey(resource)) {
+					continue;
+				}
+				if (cache != null && !retypedResources.contains(resource)) {
+					Set<IReference> modes = cache.get(contextList, userId,
+							resource);
+					if (modes != null) {
+						resourceModes.put(resource, writeMode(modes));
+						continue;
+					}
+				}
+				pending.add(resource);
+			}
+			for (int start = 0; start < pending.size(); start += ACL_BATCH_SIZE) {
+				List<IReference> batch = pending.subList(start,
+						Math.min(start + ACL_BATCH_SIZE, pending.size()));
+				Map<URI, Set<IReference>> batchModes = new HashMap<>();
+				for (IReference resource : batch) {
+					batchModes.put(resource.getURI(), new HashSet<>());
+				}
+				IDataManagerQuery<?> aclQuery = createQuery(
+						SecurityUtil.queryAclModes(batch, modelSet, userId),
+						"base:", false, contexts);
+				modelSet.getAclModeCache().recordQuery();
+				aclQuery.setParameter("agent", userId);
+				try (IExtendedIterator<?> results = aclQuery.evaluate()) {
+					for (Object result : results) {
+						IBindings<?> bindings = (IBindings<?>) result;
+						Set<IReference> modes = batchModes
+								.get(((IReference) bindings.get("target"))
+										.getURI());
+						if (modes != null) {
+							modes.add((IReference) bindings.get("mode"));
+						}
+					}
+				}
+				for (IReference resource : batch) {
+					Set<IReference> modes = batchModes.get(resource.getURI());
+					resourceModes.put(resource, writeMode(modes));
+					if (cache != null
+							&& !retypedResources.contains(resource)) {
+						cache.put(contextList, userId, resource,
+								Collections.unmodifiableSet(modes), generation);
+					}
 				}
-			}).toSet();
+			}
+		}
+
+		/**
+		 * Determines the write modes of all named resources that reference the
+		 * given blank nodes directly or through a chain of other blank nodes.
+		 * <p>
+		 * This allows {@link #writeModeFromChain(IReference)} to use the
+		 * results of a few batched queries instead of executing one query per
+		 * named resource.
+		 * 
+		 * @param resources
+		 *            The blank nodes whose chains should be inspected
+		 */
+		void resolveChainModes(Collection<IReference> resources) {
+			if (SecurityUtil.SYSTEM_USER.equals(userId)) {
+				// not required, see writeMode(IReference)
+				return;
+			}
+			Set<IReference> named = new LinkedHashSet<>();
+			Set<IReference> seen = new HashSet<>();
+			Queue<IReference> chain = new LinkedList<>();
+			for (IReference resource : resources) {
+				if (resource.getURI() == null
+						&& !resourceModes.containsKey(resource)
+						&& seen.add(resource)) {
+					chain.add(resource);
+				}
+			}
+			while (!chain.isEmpty()) {
+				IReference r = chain.remove();
+				try (IExtendedIterator<IStatement> stmts = match(null, null, r,
+						false, contexts)) {
+					for (IStatement stmt : stmts) {
+						IReference s = stmt.getSubject();
+						if (s.getURI() != null) {
+							named.add(s);
+						} else if (!resourceModes.containsKey(s) && seen.add(s)) {
+							chain.add(s);
+						}
+					}
+				}
+			}
+			resolveWriteModes(named);
 		}
 
 		/**
@@ -186,13 +339,17 @@ public class SecureDataManager extends DelegatingDataManager {
 		 *            The operation
 		 */
 		void block(Op op) {
-			IReference s = op.stmt.getSubject();
-			Collection<Op> blocked = blockedOps.get(s);
-			if (blocked == null) {
-				blocked = new ArrayList<>(2);
-				blockedOps.put(s, blocked);
-			}
-			blocked.add(op);
+			blockedOps.add(op);
+		}
+
+		/**
+		 * Releases the temporary resources of these operations.
+		 */
+		void dispose() {
+			ops.close();
+			ops = WrappedIterator.emptyIterator();
+			checkedOps.close();
+			blockedOps.close();
 		}
 
 		/**
@@ -202,21 +359,22 @@ public class SecureDataManager extends DelegatingDataManager {
 		 * dependent nodes (spreading activation).
 		 */
 		void execute() {
+			try {
+				executeOperations();
+			} finally {
+				dispose();
+			}
+		}
+
+		void executeOperations() {
 			// add potentially blocked statements
 			flushOperations();
 			while (!blockedOps.isEmpty()) {
 				// find root nodes
-				Set<IReference> roots = new HashSet<>(blockedOps.keySet());
-				for (Iterable<Op> opList : blockedOps.values()) {
-					for (Op op : opList) {
-						IStatementPattern stmt = op.stmt;
-						Object o = stmt.getObject();
-						if (o instanceof IReference
-								&& (!stmt.getSubject().equals(o))) {
-							roots.remove(o);
-						}
-					}
-				}
+				Set<IReference> roots = blockedOps.roots();
+				// retrieve the modes of all named resources that
+				// reference the roots at once
+				resolveChainModes(roots);
 				for (IReference resource : roots) {
 					WriteMode writeMode = writeMode(resource);
 					if (writeMode == WriteMode.NONE) {
@@ -291,17 +449,20 @@ public class SecureDataManager extends DelegatingDataManager {
 									&& WEBACL.PROPERTY_ACCESSTO.equals(stmt
 											.getPredicate()))) {
 						// retrieve concrete statements for remove
-						// operations
-						ops = WrappedIterator
-								.create(match(s, stmt.getPredicate(),
-										(IValue) stmt.getObject(), false,
-										contexts).toList().iterator())
-								.mapWith(new IMap<IStatement, Op>() {
-									@Override
-									public Op map(IStatement stmt) {
-										return new RemoveOp(stmt);
-									}
-								}).andThen(ops);
+						// operations, they are buffered since the removal
+						// modifies the underlying store
+						OpQueue matches = new OpQueue(SPILL_THRESHOLD);
+						try (IExtendedIterator<IStatement> stmts = match(s,
+								stmt.getPredicate(), (IValue) stmt.getObject(),
+								false, contexts)) {
+							for (IStatement matched : stmts) {
+								matches.add(new RemoveOp(matched));
+							}
+						} catch (RuntimeException e) {
+							matches.close();
+							throw e;
+						}
+						ops = matches.drain().andThen(ops);
 						continue;
 					}
 					writeMode = writeMode(op);
@@ -316,16 +477,20 @@ public class SecureDataManager extends DelegatingDataManager {
 					}
 				}
 				if (nextOp != null) {
+					track(nextOp);
 					Object o = nextOp.stmt.getObject();
 					if (o == null) {
 						// retrieve concrete statements for remove
 						// operations
-						for (IStatement stmt : match(nextOp.stmt.getSubject(),
+						try (IExtendedIterator<IStatement> stmts = match(
+								nextOp.stmt.getSubject(),
 								nextOp.stmt.getPredicate(), null, false,
 								contexts)) {
-							o = stmt.getObject();
-							if (o instanceof IReference) {
-								unlock((IReference) o, writeMode);
+							for (IStatement stmt : stmts) {
+								o = stmt.getObject();
+								if (o instanceof IReference) {
+									unlock((IReference) o, writeMode);
+								}
 							}
 						}
 					} else if (o instanceof IReference) {
@@ -355,6 +520,27 @@ public class SecureDataManager extends DelegatingDataManager {
 					}));
 		}
 
+		/**
+		 * Records if an operation that is going to be executed may change
+		 * the results of ACL queries.
+		 * 
+		 * @param op
+		 *            The operation
+		 */
+		void track(Op op) {
+			IReference p = op.stmt.getPredicate();
+			if (p == null || AclModeCache.ACL_PROPERTIES.contains(p)) {
+				aclsModified = true;
+			} else if (RDF.PROPERTY_TYPE.equals(p)) {
+				IReference s = op.stmt.getSubject();
+				if (s == null || s.equals(userId)) {
+					aclsModified = true;
+				} else {
+					retypedResources.add(s);
+				}
+			}
+		}
+
 		void setModes(Collection<IReference> elements, WriteMode mode) {
 			for (IReference elem : elements) {
 				resourceModes.put(elem, mode);
@@ -370,7 +556,7 @@ public class SecureDataManager extends DelegatingDataManager {
 		void unlock(IReference resource, WriteMode writeMode) {
 			if (resource.getURI() == null) {
 				resourceModes.put(resource, writeMode);
-				Iterable<Op> blocked = blockedOps.remove(resource);
+				Collection<Op> blocked = blockedOps.remove(resource);
 				if (blocked != null) {
 					for (Op op : blocked) {
 						// test if write mode is sufficient for remove
@@ -421,21 +607,26 @@ public class SecureDataManager extends DelegatingDataManager {
 				// Is this correct?
 				return WriteMode.MODIFY;
 			}
-			IDataManagerQuery<?> aclQuery = createQuery(
-					SecurityUtil.QUERY_ACLMODE, "base:", false, contexts);
-			aclQuery.setParameter("target", resource).setParameter("user",
-					userId);
-			Set<?> modes = aclModes(resource);
+			writeMode = writeMode(aclModes(resource));
+			resourceModes.put(resource, writeMode);
+			return writeMode;
+		}
+
+		/**
+		 * Maps a set of ACL modes to a write mode.
+		 * 
+		 * @param modes
+		 *            The ACL modes of a resource
+		 * @return The resulting write mode
+		 */
+		WriteMode writeMode(Set<?> modes) {
 			if (modes.contains(WEBACL.MODE_CONTROL)
 					|| modes.contains(WEBACL.MODE_WRITE)) {
-				writeMode = WriteMode.MODIFY;
+				return WriteMode.MODIFY;
 			} else if (modes.contains(WEBACL.MODE_APPEND)) {
-				writeMode = WriteMode.MODIFY;
-			} else {
-				writeMode = WriteMode.NONE;
+				return WriteMode.MODIFY;
 			}
-			resourceModes.put(resource, writeMode);
-			return writeMode;
+			return WriteMode.NONE;
 		}
 
 		/**
@@ -551,6 +742,25 @@ public class SecureDataManager extends DelegatingDataManager {
 		ADD, MODIFY, NONE
 	}
 
+	/**
+	 * Maximum number of resources whose ACL modes are retrieved by a single
+	 * query.
+	 */
+	final static int ACL_BATCH_SIZE = 100;
+
+	/**
+	 * Maximum number of pending operations per {@link SecureOps} that are kept
+	 * in memory before further operations are written to a temporary file.
+	 */
+	final static int SPILL_THRESHOLD = Integer.getInteger(
+			"net.enilink.security.spillThreshold", 10000);
+
+	/**
+	 * Maximum number of contexts whose read permissions are remembered by a
+	 * data manager.
+	 */
+	final static int MAX_READABLE_CONTEXTS = 1000;
+
 	final static Set<IReference> removeModes = new HashSet<IReference>(
 			Arrays.asList(WEBACL.MODE_WRITE, WEBACL.MODE_CONTROL,
 					ENILINKACL.MODE_WRITERESTRICTED));
@@ -567,6 +777,20 @@ public class SecureDataManager extends DelegatingDataManager {
 
 	final Map<IReference, SecureOpsInfo> userToOperations = new HashMap<>();
 
+	/**
+	 * Read permissions of {@link #readableContextsUser} that are valid as long
+	 * as the generation of the model set's {@link PermissionCache} does not
+	 * change and none of the corresponding cache entries has expired. A data
+	 * manager is only used by a single thread at a time.
+	 */
+	final Map<IReference, Boolean> readableContexts = new HashMap<>();
+
+	URI readableContextsUser;
+
+	long readableContextsGeneration;
+
+	long readableContextsExpiration = Long.MAX_VALUE;
+
 	public SecureDataManager(ISecureModelSet modelSet, IDataManager delegate) {
 		this.modelSet = modelSet;
 		this.delegate = delegate;
@@ -633,19 +857,64 @@ public class SecureDataManager extends DelegatingDataManager {
 	}
 
 	protected IReference[] assertReadable(IReference... contexts) {
+		if (contexts.length == 0) {
+			return contexts;
+		}
 		URI userId = SecurityUtil.getUser();
-		List<IReference> accessibleCtxs = new ArrayList<IReference>(
-				contexts.length);
+		long generation = modelSet.getPermissionCache().getGeneration();
+		if (!userId.equals(readableContextsUser)
+				|| generation != readableContextsGeneration
+				|| readableContextsExpiration <= System.currentTimeMillis()
+				|| readableContexts.size() > MAX_READABLE_CONTEXTS) {
+			readableContexts.clear();
+			readableContextsUser = userId;
+			readableContextsGeneration = generation;
+			readableContextsExpiration = Long.MAX_VALUE;
+		}
+		int readableCount = 0;
 		for (IReference ctx : contexts) {
-			if (modelSet.isReadableBy(ctx, userId)) {
-				accessibleCtxs.add(ctx);
+			if (isReadable(ctx, userId)) {
+				readableCount++;
 			}
 		}
-		if (accessibleCtxs.isEmpty() && contexts.length > 0) {
+		if (readableCount == contexts.length) {
+			// common case, all contexts are readable
+			return contexts;
+		}
+		if (readableCount == 0) {
 			throw new KommaException(
 					"Reading without a dataset has been denied.");
 		}
-		return accessibleCtxs.toArray(new IReference[accessibleCtxs.size()]);
+		IReference[] accessibleCtxs = new IReference[readableCount];
+		int i = 0;
+		for (IReference ctx : contexts) {
+			if (isReadable(ctx, userId)) {
+				accessibleCtxs[i++] = ctx;
+			}
+		}
+		return accessibleCtxs;
+	}
+
+	/**
+	 * Tests if a context is readable by the given user and remembers the
+	 * result for this data manager until the corresponding entry of the
+	 * {@link PermissionCache} expires.
+	 */
+	boolean isReadable(IReference ctx, URI userId) {
+		Boolean readable = readableContexts.get(ctx);
+		if (readable == null) {
+			readable = modelSet.isReadableBy(ctx, userId);
+			// the default context is always readable
+			long expiration = ctx == null ? Long.MAX_VALUE
+					: modelSet.getPermissionCache().getReadableExpiration(
+							ctx, userId);
+			if (expiration > 0) {
+				readableContexts.put(ctx, readable);
+				readableContextsExpiration = Math.min(
+						readableContextsExpiration, expiration);
+			}
+		}
+		return readable;
 	}
 
 	@Override
@@ -682,14 +951,14 @@ public class SecureDataManager extends DelegatingDataManager {
 							}
 						}
 					} finally {
-						userToOperations.clear();
+						disposeOperations();
 					}
 					super.commit();
 				}
 
 				@Override
 				public void rollback() {
-					userToOperations.clear();
+					disposeOperations();
 					super.rollback();
 				}
 			};
@@ -728,6 +997,15 @@ public class SecureDataManager extends DelegatingDataManager {
 		return this;
 	}
 
+	void disposeOperations() {
+		for (SecureOpsInfo opInfo : userToOperations.values()) {
+			for (SecureOps ops : opInfo.contextsToOps.values()) {
+				ops.dispose();
+			}
+		}
+		userToOperations.clear();
+	}
+
 	SecureOps secureOps(IReference user, IReference[] contexts) {
 		SecureOpsInfo opsInfo = userToOperations.get(user);
 		if (opsInfo == null) {
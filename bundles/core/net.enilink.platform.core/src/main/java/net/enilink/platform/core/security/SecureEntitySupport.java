@@ -8,6 +8,9 @@ import net.enilink.commons.iterator.IExtendedIterator;
 import net.enilink.composition.traits.Behaviour;
 import net.enilink.komma.core.IQuery;
 import net.enilink.komma.core.IReference;
+import net.enilink.komma.model.IModel;
+import net.enilink.komma.model.IModelSet;
+import net.enilink.komma.model.IObject;
 import net.enilink.vocab.acl.ENILINKACL;
 import net.enilink.vocab.acl.WEBACL;
 
@@ -35,10 +38,26 @@ public abstract class SecureEntitySupport implements ISecureEntity,
 		}
 	}
 
+	/**
+	 * Returns the model set of this entity whose group membership index is
+	 * used to look up the groups and classes of agents.
+	 */
+	protected IModelSet getModelSet() {
+		Object entity = getBehaviourDelegate();
+		if (entity instanceof IModelSet modelSet) {
+			return modelSet;
+		} else if (entity instanceof IModel model) {
+			return model.getModelSet();
+		} else if (entity instanceof IObject object && object.getModel() != null) {
+			return object.getModel().getModelSet();
+		}
+		return null;
+	}
+
 	protected IExtendedIterator<IReference> queryModes(IReference agent,
 			IReference mode) {
 		IQuery<?> query = getEntityManager().createQuery(
-				SecurityUtil.QUERY_ACLMODE, false);
+				SecurityUtil.queryAclModes(getModelSet(), agent), false);
 		query.setParameter("target", this);
 		if (agent != null) {
 			query.setParameter("agent", agent);
@@ -4,8 +4,8 @@ import com.google.inject.*;
 import com.google.inject.name.Names;
 import com.google.inject.Module;
 import com.google.inject.util.Modules;
+import net.enilink.commons.iterator.IExtendedIterator;
 import net.enilink.composition.annotations.ParameterTypes;
-import net.enilink.composition.cache.annotations.Cacheable;
 import net.enilink.composition.traits.Behaviour;
 import net.enilink.komma.common.notify.INotification;
 import net.enilink.komma.common.notify.INotificationListener;
@@ -15,10 +15,13 @@ import net.enilink.komma.dm.IDataManager;
 import net.enilink.komma.em.ThreadLocalDataManager;
 import net.enilink.komma.model.IModel;
 import net.enilink.komma.model.IModelSet;
+import net.enilink.komma.model.MODELS;
 import net.enilink.komma.model.concepts.ModelSet;
 import net.enilink.komma.model.event.IStatementNotification;
 import net.enilink.vocab.acl.ENILINKACL;
 import net.enilink.vocab.acl.WEBACL;
+import net.enilink.vocab.rdf.RDF;
+import net.enilink.vocab.rdfs.RDFS;
 import org.aopalliance.intercept.MethodInvocation;
 
 import java.util.*;
@@ -26,6 +29,11 @@ import java.util.*;
 public abstract class SecureModelSetSupport implements IModelSet.Internal, ISecureModelSet,
 		Behaviour<ISecureModelSet> {
 	protected EntityVar<INotificationListener<INotification>> metaDataListener;
+	protected EntityVar<INotificationListener<INotification>> dataListener;
+	protected EntityVar<AclModeCache> aclModeCache;
+	protected EntityVar<GroupMembershipIndex> membershipIndex;
+	protected EntityVar<PermissionCache> permissionCache;
+	protected EntityVar<VisibleModelsCache> visibleModelsCache;
 
 	static class SecureThreadLocalDataManager extends ThreadLocalDataManager {
 		@Inject
@@ -72,18 +80,17 @@ public abstract class SecureModelSetSupport implements IModelSet.Internal, ISecu
 		metaDataListener.set(new INotificationListener<INotification>() {
 			NotificationFilter<INotification> filter = NotificationFilter
 					.instanceOf(IStatementNotification.class);
-			Set<URI> properties = new HashSet<>(Arrays.asList(WEBACL.PROPERTY_AGENT, WEBACL.PROPERTY_AGENTCLASS, WEBACL.PROPERTY_ACCESSTO,
-					WEBACL.PROPERTY_ACCESSTOCLASS, WEBACL.PROPERTY_MODE, WEBACL.PROPERTY_OWNER));
 
 			@Override
 			public void notifyChanged(Collection<? extends INotification> notifications) {
+				invalidateAclModes(notifications);
+				GroupMembershipIndex index = getMembershipIndex();
 				notifications.stream().forEach(notification -> {
 					IStatementNotification stmtNotification = (IStatementNotification) notification;
-					if (properties.contains(stmtNotification.getPredicate())) {
-						// refresh cached properties of this model set
-						getMetaDataManager().refresh(getBehaviourDelegate());
-					}
+					index.statementChanged(stmtNotification.getStatement(), stmtNotification.isAdd());
 				});
+				invalidatePermissions(notifications);
+				updateVisibleModels(notifications);
 			}
 
 			@Override
@@ -92,6 +99,282 @@ public abstract class SecureModelSetSupport implements IModelSet.Internal, ISecu
 			}
 		});
 		getBehaviourDelegate().addMetaDataListener(metaDataListener.get());
+
+		// resource specific ACLs are stored within the models themselves
+		dataListener.set(new INotificationListener<INotification>() {
+			NotificationFilter<INotification> filter = NotificationFilter
+					.instanceOf(IStatementNotification.class);
+
+			@Override
+			public void notifyChanged(Collection<? extends INotification> notifications) {
+				List<INotification> aclNotifications = new ArrayList<>();
+				for (INotification notification : notifications) {
+					if (isAclRelevant((IStatementNotification) notification)) {
+						aclNotifications.add(notification);
+					}
+				}
+				if (!aclNotifications.isEmpty()) {
+					invalidateAclModes(aclNotifications);
+				}
+			}
+
+			@Override
+			public NotificationFilter<INotification> getFilter() {
+				return filter;
+			}
+		});
+		getBehaviourDelegate().addListener(dataListener.get());
+	}
+
+	/**
+	 * Tests if a changed statement may change the result of
+	 * {@link SecurityUtil#QUERY_ACLMODE}.
+	 */
+	protected boolean isAclRelevant(IStatementNotification stmt) {
+		IReference p = stmt.getPredicate();
+		return p == null || RDF.PROPERTY_TYPE.equals(p) || AclModeCache.ACL_PROPERTIES.contains(p);
+	}
+
+	/**
+	 * Removes cached ACL modes that may be affected by the given statement
+	 * notifications.
+	 */
+	protected void invalidateAclModes(Collection<? extends INotification> notifications) {
+		AclModeCache cache = getAclModeCache();
+		for (INotification notification : notifications) {
+			IStatementNotification stmt = (IStatementNotification) notification;
+			IReference p = stmt.getPredicate();
+			if (WEBACL.PROPERTY_ACCESSTO.equals(p)) {
+				if (stmt.getObject() instanceof IReference target) {
+					cache.invalidateResource(target);
+				}
+			} else if (WEBACL.PROPERTY_OWNER.equals(p)) {
+				cache.invalidateResource(stmt.getSubject());
+			} else if (RDF.PROPERTY_TYPE.equals(p)) {
+				// types are relevant for acl:accessToClass and acl:agentClass
+				cache.invalidateResource(stmt.getSubject());
+				cache.invalidateAgent(stmt.getSubject());
+			} else if (p == null || AclModeCache.ACL_PROPERTIES.contains(p)) {
+				// the affected targets are not known without further queries,
+				// but only modes that were computed from the changed context
+				if (stmt.getContext() != null) {
+					cache.invalidateContext(stmt.getContext());
+				} else {
+					cache.clear();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes cached model permissions that may be affected by the given
+	 * notifications about changes of the meta data.
+	 */
+	protected void invalidatePermissions(Collection<? extends INotification> notifications) {
+		PermissionCache cache = getPermissionCache();
+		for (INotification notification : notifications) {
+			IStatementNotification stmt = (IStatementNotification) notification;
+			IReference p = stmt.getPredicate();
+			if (WEBACL.PROPERTY_ACCESSTO.equals(p)) {
+				if (stmt.getObject() instanceof IReference model) {
+					cache.invalidateModel(model);
+				}
+			} else if (WEBACL.PROPERTY_OWNER.equals(p)) {
+				cache.invalidateModel(stmt.getSubject());
+			} else if (WEBACL.PROPERTY_AGENT.equals(p) || WEBACL.PROPERTY_AGENTCLASS.equals(p)
+					|| WEBACL.PROPERTY_MODE.equals(p)) {
+				// invalidate the targets of the changed authorization
+				IEntityManager em = getMetaDataManager();
+				if (em.hasMatch(stmt.getSubject(), WEBACL.PROPERTY_ACCESSTOCLASS, null)) {
+					cache.clear();
+					return;
+				}
+				try (IExtendedIterator<IStatement> targets = em.match(stmt.getSubject(),
+						WEBACL.PROPERTY_ACCESSTO, null)) {
+					for (IStatement target : targets) {
+						if (target.getObject() instanceof IReference model) {
+							cache.invalidateModel(model);
+						}
+					}
+				}
+			} else if (RDF.PROPERTY_TYPE.equals(p)) {
+				// types are relevant for acl:accessToClass and acl:agentClass
+				cache.invalidateModel(stmt.getSubject());
+				cache.invalidateAgent(stmt.getSubject());
+			} else if (AclModeCache.ACL_PROPERTIES.contains(p)) {
+				// acl:accessToClass, foaf:member and rdfs:subClassOf may
+				// affect arbitrary models and agents
+				cache.clear();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Updates the cached lists of visible models for added or removed models
+	 * and changed ACLs of the meta data.
+	 */
+	protected void updateVisibleModels(Collection<? extends INotification> notifications) {
+		VisibleModelsCache cache = getVisibleModelsCache();
+		for (INotification notification : notifications) {
+			IStatementNotification stmt = (IStatementNotification) notification;
+			IReference p = stmt.getPredicate();
+			if (MODELS.PROPERTY_MODEL.equals(p)) {
+				if (stmt.getObject() instanceof IReference model) {
+					if (stmt.isAdd()) {
+						cache.modelAdded(model);
+					} else {
+						cache.modelRemoved(model);
+					}
+				}
+			} else if (WEBACL.PROPERTY_OWNER.equals(p) || WEBACL.PROPERTY_AGENT.equals(p)) {
+				if (stmt.getObject() instanceof IReference agent) {
+					cache.invalidateAgent(agent);
+				}
+			} else if (WEBACL.PROPERTY_ACCESSTO.equals(p) || WEBACL.PROPERTY_MODE.equals(p)) {
+				// invalidate the agents of the changed authorization
+				IEntityManager em = getMetaDataManager();
+				if (em.hasMatch(stmt.getSubject(), WEBACL.PROPERTY_AGENTCLASS, null)) {
+					cache.clear();
+					return;
+				}
+				try (IExtendedIterator<IStatement> agents = em.match(stmt.getSubject(),
+						WEBACL.PROPERTY_AGENT, null)) {
+					for (IStatement agent : agents) {
+						if (agent.getObject() instanceof IReference agentRef) {
+							cache.invalidateAgent(agentRef);
+						}
+					}
+				}
+			} else if (RDF.PROPERTY_TYPE.equals(p)) {
+				// types are relevant for acl:agentClass and acl:accessToClass
+				cache.invalidateAgent(stmt.getSubject());
+				if (stmt.getObject() instanceof IReference type
+						&& getMetaDataManager().hasMatch(null, WEBACL.PROPERTY_ACCESSTOCLASS, type)) {
+					cache.clear();
+					return;
+				}
+			} else if (WEBACL.PROPERTY_AGENTCLASS.equals(p) || WEBACL.PROPERTY_ACCESSTOCLASS.equals(p)
+					|| RDFS.PROPERTY_SUBCLASSOF.equals(p)) {
+				cache.clear();
+				return;
+			}
+		}
+	}
+
+	@Override
+	public VisibleModelsCache getVisibleModelsCache() {
+		VisibleModelsCache cache = visibleModelsCache.get();
+		if (cache == null) {
+			synchronized (visibleModelsCache) {
+				cache = visibleModelsCache.get();
+				if (cache == null) {
+					cache = new VisibleModelsCache();
+					visibleModelsCache.set(cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	@Override
+	public List<IReference> getVisibleModels(IReference agent, int offset, int limit) {
+		List<IReference> models = getVisibleModelsCache().getModels(agent, this::computeVisibleModels);
+		int from = Math.min(Math.max(offset, 0), models.size());
+		int to = limit < 0 ? models.size() : (int) Math.min((long) from + limit, models.size());
+		return models.subList(from, to);
+	}
+
+	/**
+	 * Determines the models that are visible to an agent because it is either
+	 * their owner or allowed to read them.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 * @param candidates
+	 *            The models that should be tested or <code>null</code> if all
+	 *            models should be tested
+	 * @return The visible models
+	 */
+	protected Collection<IReference> computeVisibleModels(IReference agent, Collection<IReference> candidates) {
+		StringBuilder values = new StringBuilder();
+		if (candidates != null) {
+			if (candidates.isEmpty()) {
+				return Collections.emptyList();
+			}
+			values.append("values ?o { ");
+			for (IReference candidate : candidates) {
+				values.append("<").append(candidate.getURI()).append("> ");
+			}
+			values.append("} ");
+		}
+		IQuery<?> query = getMetaDataManager().createQuery(
+				String.format(SecurityUtil.QUERY_VISIBLE_MODELS, values), false);
+		query.setParameter("s", getBehaviourDelegate()).setParameter("p", MODELS.PROPERTY_MODEL)
+				.setParameter("agent", agent).setParameter("mode", WEBACL.MODE_READ);
+		return query.evaluateRestricted(IReference.class).toList();
+	}
+
+	@Override
+	public PermissionCache getPermissionCache() {
+		PermissionCache cache = permissionCache.get();
+		if (cache == null) {
+			synchronized (permissionCache) {
+				cache = permissionCache.get();
+				if (cache == null) {
+					cache = new PermissionCache();
+					permissionCache.set(cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	@Override
+	public GroupMembershipIndex getMembershipIndex() {
+		GroupMembershipIndex index = membershipIndex.get();
+		if (index == null) {
+			synchronized (membershipIndex) {
+				index = membershipIndex.get();
+				if (index == null) {
+					index = new GroupMembershipIndex();
+					membershipIndex.set(index);
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the ACL modes of an agent for the given entity of the meta data.
+	 * <p>
+	 * The groups and classes of the agent are taken from the
+	 * {@link GroupMembershipIndex} if it is available.
+	 */
+	protected Set<IReference> aclModes(ISecureEntity secureEntity, IReference agent) {
+		if (SecurityUtil.SYSTEM_USER.equals(agent)) {
+			return secureEntity.getAclModes(agent);
+		}
+		IQuery<?> query = getMetaDataManager().createQuery(
+				SecurityUtil.queryAclModes(getBehaviourDelegate(), agent), false);
+		query.setParameter("target", secureEntity).setParameter("agent", agent);
+		return query.evaluateRestricted(IReference.class).toSet();
+	}
+
+	@Override
+	public AclModeCache getAclModeCache() {
+		AclModeCache cache = aclModeCache.get();
+		if (cache == null) {
+			synchronized (aclModeCache) {
+				cache = aclModeCache.get();
+				if (cache == null) {
+					cache = new AclModeCache();
+					aclModeCache.set(cache);
+				}
+			}
+		}
+		return cache;
 	}
 
 	@ParameterTypes({URI.class, String.class})
@@ -109,7 +392,6 @@ public abstract class SecureModelSetSupport implements IModelSet.Internal, ISecu
 	}
 
 	@Override
-	@Cacheable
 	public boolean isReadableBy(IReference model, IReference agent) {
 		if (model == null
 				|| model.equals(((IModelSet.Internal) getBehaviourDelegate())
@@ -118,12 +400,20 @@ public abstract class SecureModelSetSupport implements IModelSet.Internal, ISecu
 		) {
 			return true;
 		}
+		return getPermissionCache().isReadable(model, agent, this::computeReadableBy);
+	}
+
+	/**
+	 * Determines if an agent is allowed to read a model by evaluating the
+	 * model's ACLs.
+	 */
+	protected boolean computeReadableBy(IReference model, IReference agent) {
 		ISecureEntity secureEntity = getMetaDataManager().findRestricted(model,
 				ISecureEntity.class);
 		if (agent.equals(secureEntity.getAclOwner())) {
 			return true;
 		}
-		Set<IReference> modes = secureEntity.getAclModes(agent);
+		Set<IReference> modes = aclModes(secureEntity, agent);
 		boolean isReadable = modes.contains(WEBACL.MODE_READ)
 				|| modes.contains(ENILINKACL.MODE_WRITERESTRICTED)
 				|| modes.contains(WEBACL.MODE_CONTROL);
@@ -140,7 +430,6 @@ public abstract class SecureModelSetSupport implements IModelSet.Internal, ISecu
 	}
 
 	@Override
-	@Cacheable
 	public IReference writeModeFor(IReference model, IReference agent) {
 		if (model == null
 				|| model.equals(((IModelSet.Internal) getBehaviourDelegate())
@@ -150,12 +439,20 @@ public abstract class SecureModelSetSupport implements IModelSet.Internal, ISecu
 		if (model.equals(((ModelSet) getBehaviourDelegate()).getMetaDataContext())) {
 			return WEBACL.MODE_WRITE;
 		}
+		return getPermissionCache().writeMode(model, agent, this::computeWriteModeFor);
+	}
+
+	/**
+	 * Determines the write mode of an agent for a model by evaluating the
+	 * model's ACLs.
+	 */
+	protected IReference computeWriteModeFor(IReference model, IReference agent) {
 		ISecureEntity secureEntity = getMetaDataManager().findRestricted(model,
 				ISecureEntity.class);
 		if (agent.equals(secureEntity.getAclOwner())) {
 			return WEBACL.MODE_CONTROL;
 		}
-		Set<IReference> modes = secureEntity.getAclModes(agent);
+		Set<IReference> modes = aclModes(secureEntity, agent);
 		IReference mode = null;
 		if (modes.contains(WEBACL.MODE_CONTROL)) {
 			mode = WEBACL.MODE_CONTROL;
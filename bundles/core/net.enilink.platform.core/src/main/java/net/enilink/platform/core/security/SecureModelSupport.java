@@ -10,6 +10,6 @@ public abstract class SecureModelSupport implements IModel.Internal {
 	@ParameterTypes(URI.class)
 	public boolean demandLoadImport(MethodInvocation invocation) {
 		return SecurityUtil.SYSTEM_USER.equals(SecurityUtil.getUser())
-				|| SecurityUtil.isMemberOf(getModelSet().getMetaDataManager(), SecurityUtil.ADMINISTRATORS_GROUP);
+				|| SecurityUtil.isMemberOf(getModelSet(), SecurityUtil.ADMINISTRATORS_GROUP);
 	}
 }
\ No newline at end of file
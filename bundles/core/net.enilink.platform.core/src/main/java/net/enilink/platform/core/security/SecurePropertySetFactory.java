@@ -1,9 +1,13 @@
 package net.enilink.platform.core.security;
 
+import net.enilink.commons.iterator.IExtendedIterator;
+import net.enilink.commons.iterator.WrappedIterator;
 import net.enilink.composition.mapping.PropertyAttribute;
 import net.enilink.composition.properties.PropertySet;
 import net.enilink.composition.properties.komma.KommaPropertySet;
 import net.enilink.composition.properties.komma.KommaPropertySetFactory;
+import net.enilink.komma.core.IEntity;
+import net.enilink.komma.core.IEntityManager;
 import net.enilink.komma.core.IQuery;
 import net.enilink.komma.core.IReference;
 import net.enilink.komma.core.URI;
@@ -11,6 +15,8 @@ import net.enilink.komma.core.URIs;
 import net.enilink.komma.model.MODELS;
 import net.enilink.vocab.acl.WEBACL;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -37,14 +43,7 @@ public class SecurePropertySetFactory extends KommaPropertySetFactory {
 				                                        String filterPattern, int limit) {
 					URI userId = SecurityUtil.getUser();
 					if (userId != null) {
-						query = "prefix acl: <"
-								+ WEBACL.NAMESPACE
-								+ "> "
-								+ "SELECT DISTINCT ?o WHERE { ?s ?p ?o . "
-								+ "{ ?o acl:owner ?agent } union {" //
-								+ "{ ?acl acl:accessTo ?o } union { ?acl acl:accessToClass ?class . ?o a ?class } . ?acl acl:mode ?mode . "
-								+ "{ ?acl acl:agent ?agent } union { ?agent a ?agentClass . ?acl acl:agentClass ?agentClass }"
-								+ "}}";
+						query = String.format(SecurityUtil.QUERY_VISIBLE_MODELS, "");
 						return super
 								.createElementsQuery(query, filterPattern,
 										limit).setParameter("agent", userId)
@@ -54,9 +53,38 @@ public class SecurePropertySetFactory extends KommaPropertySetFactory {
 							limit);
 				}
 
+				/**
+				 * The last list of visible models and the corresponding
+				 * elements.
+				 */
+				volatile Object[] visibleElements;
+
+				@SuppressWarnings("unchecked")
+				@Override
+				protected IExtendedIterator<E> createElementsIterator() {
+					URI userId = SecurityUtil.getUser();
+					if (userId == null) {
+						return super.createElementsIterator();
+					}
+					// use the per-user list of visible models, the elements
+					// are only looked up again if this list has changed
+					List<IReference> models = ((ISecureModelSet) bean).getVisibleModels(userId, 0, -1);
+					Object[] visible = visibleElements;
+					if (visible == null || visible[0] != models) {
+						IEntityManager em = ((IEntity) bean).getEntityManager();
+						List<E> elements = new ArrayList<>(models.size());
+						for (IReference model : models) {
+							elements.add((E) em.find(model));
+						}
+						visible = new Object[] { models, Collections.unmodifiableList(elements) };
+						visibleElements = visible;
+					}
+					return WrappedIterator.create(((List<E>) visible[1]).iterator());
+				}
+
 				@Override
 				protected void setCache(List<E> cache) {
-					// do not cache the values
+					// values are cached by ISecureModelSet
 				}
 			};
 			injector.injectMembers(propertySet);
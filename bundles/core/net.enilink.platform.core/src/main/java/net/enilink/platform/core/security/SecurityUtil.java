@@ -1,6 +1,8 @@
 package net.enilink.platform.core.security;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import javax.security.auth.Subject;
@@ -10,6 +12,7 @@ import net.enilink.komma.core.IReference;
 import net.enilink.komma.core.URI;
 import net.enilink.komma.core.URIs;
 import net.enilink.komma.em.concepts.IResource;
+import net.enilink.komma.model.IModelSet;
 import net.enilink.platform.security.auth.EnilinkPrincipal;
 import net.enilink.vocab.acl.WEBACL;
 import net.enilink.vocab.foaf.FOAF;
@@ -34,17 +37,39 @@ public class SecurityUtil {
 
 	public static final Subject SYSTEM_USER_SUBJECT = subjectForUser(SYSTEM_USER);
 
-	public static final String QUERY_ACLMODE = "prefix acl: <" + WEBACL.NAMESPACE + "> prefix foaf: <" + FOAF.NAMESPACE
-			+ "> " + "select ?mode where { " //
-			+ "{ ?target acl:owner ?agent . bind (acl:Control as ?mode) } union {"
+	private static final String ACLMODE_PREFIXES = "prefix acl: <" + WEBACL.NAMESPACE + "> prefix foaf: <"
+			+ FOAF.NAMESPACE + "> ";
+
+	private static final String ACLMODE_PATTERN = "{ ?target acl:owner ?agent . bind (acl:Control as ?mode) } union {"
 			+ "{ ?acl acl:accessTo ?target } union { ?target a [ rdfs:subClassOf* ?class ] . ?acl acl:accessToClass ?class } . "
 			+ "{ ?acl acl:agent [ foaf:member* ?agent ] } union { ?agent a [ rdfs:subClassOf* ?agentClass ] . ?acl acl:agentClass ?agentClass } . "
-			+ "?acl acl:mode ?mode }" + //
-			"}";
+			+ "?acl acl:mode ?mode }";
+
+	public static final String QUERY_ACLMODE = ACLMODE_PREFIXES + "select ?mode where { " + ACLMODE_PATTERN + "}";
 
+	/**
+	 * Query that determines if <code>?agent</code> is a transitive member of
+	 * <code>?group</code>.
+	 * <p>
+	 * It is only used as long as the {@link GroupMembershipIndex} of a model
+	 * set is not loaded, see {@link #isMemberOf(IModelSet, IReference)}.
+	 */
 	public static final String QUERY_MEMBER = "prefix foaf: <" + FOAF.NAMESPACE
 			+ "> ask where { ?group foaf:member* ?agent }";
 
+	/**
+	 * Query for the models <code>?o</code> of a model set <code>?s</code> via
+	 * the property <code>?p</code> that are owned by <code>?agent</code> or
+	 * accessible with <code>?mode</code>. The placeholder <code>%s</code> can
+	 * be used to restrict the tested models with a values clause.
+	 */
+	public static final String QUERY_VISIBLE_MODELS = "prefix acl: <" + WEBACL.NAMESPACE + "> "
+			+ "select distinct ?o where { %s?s ?p ?o . "
+			+ "{ ?o acl:owner ?agent } union {"
+			+ "{ ?acl acl:accessTo ?o } union { ?acl acl:accessToClass ?class . ?o a ?class } . ?acl acl:mode ?mode . "
+			+ "{ ?acl acl:agent ?agent } union { ?agent a ?agentClass . ?acl acl:agentClass ?agentClass }"
+			+ "}}";
+
 	private static final QualifiedName JOB_USER = new QualifiedName(
 			"net.enilink.platform.core.security", "user");
 
@@ -136,6 +161,10 @@ public class SecurityUtil {
 	/**
 	 * Determines if the current user is member of a group within the given
 	 * entity manager.
+	 * <p>
+	 * This evaluates the path <code>foaf:member*</code>, use
+	 * {@link #isMemberOf(IModelSet, IReference)} to look up the membership in
+	 * the {@link GroupMembershipIndex} of a model set.
 	 *
 	 * @param em    The entity manager that contains the data about the current
 	 *              user
@@ -148,4 +177,142 @@ public class SecurityUtil {
 		return em.find(group, Group.class).getFoafMember().contains(user) || em.createQuery(QUERY_MEMBER)
 				.setParameter("agent", user).setParameter("group", group).getBooleanResult();
 	}
+
+	/**
+	 * Determines if the current user is member of a group within the given
+	 * model set.
+	 * <p>
+	 * The {@link GroupMembershipIndex} of secure model sets is used if it is
+	 * available, else the meta data of the model set is queried.
+	 *
+	 * @param modelSet The model set that contains the data about the current
+	 *                 user
+	 * @param group    The group that should be looked up
+	 * @return <code>true</code> if the current user is member of the given
+	 * <code>group</code>, else <code>false</code>
+	 */
+	public static boolean isMemberOf(IModelSet modelSet, IReference group) {
+		if (modelSet instanceof ISecureModelSet secureModelSet) {
+			GroupMembershipIndex index = secureModelSet.getMembershipIndex();
+			if (index.isLoaded()) {
+				return index.isMemberOf(getUser(), group);
+			}
+		}
+		return isMemberOf(modelSet.getMetaDataManager(), group);
+	}
+
+	/**
+	 * Creates a query that retrieves the ACL modes of an agent for a target.
+	 * <p>
+	 * The groups and classes of the agent are taken from the
+	 * {@link GroupMembershipIndex} of the model set. As long as the index is
+	 * not loaded or if the agent, one of its groups or classes is a blank node
+	 * then {@link #QUERY_ACLMODE} is returned.
+	 *
+	 * @param modelSet The model set whose meta data describes the agent
+	 * @param agent    The agent or <code>null</code> if the query is used for
+	 *                 arbitrary agents
+	 * @return A SPARQL query that expects the parameters <code>?target</code>
+	 * and <code>?agent</code>
+	 */
+	public static String queryAclModes(IModelSet modelSet, IReference agent) {
+		String pattern = aclModePattern(modelSet, agent);
+		return pattern == null ? QUERY_ACLMODE
+				: ACLMODE_PREFIXES + "select ?mode where { " + pattern + "}";
+	}
+
+	/**
+	 * Returns a graph pattern for the ACL modes of <code>agent</code> whose
+	 * groups and classes are looked up in the {@link GroupMembershipIndex} of
+	 * the model set, or <code>null</code> if the index can not be used.
+	 */
+	static String aclModePattern(IModelSet modelSet, IReference agent) {
+		if (agent == null || agent.getURI() == null || SYSTEM_USER.equals(agent)
+				|| !(modelSet instanceof ISecureModelSet secureModelSet)) {
+			return null;
+		}
+		GroupMembershipIndex index = secureModelSet.getMembershipIndex();
+		if (!index.isLoaded()) {
+			return null;
+		}
+		Set<IReference> members = new HashSet<>(index.getGroups(agent));
+		members.add(agent);
+		Set<IReference> agentClasses = index.getAgentClasses(agent, modelSet.getMetaDataManager());
+		if (!members.stream().allMatch(m -> m.getURI() != null)
+				|| !agentClasses.stream().allMatch(c -> c.getURI() != null)) {
+			return null;
+		}
+		return aclModePattern(members, agentClasses);
+	}
+
+	static String aclModePattern(Collection<? extends IReference> members,
+			Collection<? extends IReference> agentClasses) {
+		StringBuilder pattern = new StringBuilder("{ ?target acl:owner ?agent . bind (acl:Control as ?mode) } union {")
+				.append("{ ?acl acl:accessTo ?target } union { ?target a [ rdfs:subClassOf* ?class ] . ?acl acl:accessToClass ?class } . ")
+				.append("{ ?acl acl:agent ?member . values ?member {");
+		for (IReference member : members) {
+			pattern.append(" <").append(member.getURI()).append(">");
+		}
+		pattern.append(" } } union { ?acl acl:agentClass ?agentClass . values ?agentClass {");
+		for (IReference agentClass : agentClasses) {
+			pattern.append(" <").append(agentClass.getURI()).append(">");
+		}
+		return pattern.append(" } } . ?acl acl:mode ?mode }").toString();
+	}
+
+	/**
+	 * Creates a query that retrieves the ACL modes of an agent for a target
+	 * where the agent's groups and classes are already known.
+	 * <p>
+	 * In contrast to {@link #QUERY_ACLMODE} this query does not evaluate the
+	 * paths <code>foaf:member*</code> and <code>rdfs:subClassOf*</code> for
+	 * the agent. It expects the parameters <code>?target</code> and
+	 * <code>?agent</code>.
+	 *
+	 * @param members      The named agent and all of its groups
+	 * @param agentClasses The named classes of the agent including their super
+	 *                     classes
+	 * @return A SPARQL query with the members and agent classes as inline values
+	 */
+	public static String queryAclModesForAgents(Collection<? extends IReference> members,
+			Collection<? extends IReference> agentClasses) {
+		return ACLMODE_PREFIXES + "select ?mode where { " + aclModePattern(members, agentClasses) + "}";
+	}
+
+	/**
+	 * Creates a query that retrieves the ACL modes of an agent for multiple
+	 * targets at once.
+	 * <p>
+	 * The query returns bindings for <code>?target</code> and
+	 * <code>?mode</code> and expects the parameter <code>?agent</code>.
+	 *
+	 * @param targets The named target resources
+	 * @return A SPARQL query with the targets as inline values
+	 */
+	public static String queryAclModes(Collection<? extends IReference> targets) {
+		return queryAclModes(targets, null, null);
+	}
+
+	/**
+	 * Creates a query that retrieves the ACL modes of an agent for multiple
+	 * targets at once.
+	 * <p>
+	 * The groups and classes of the agent are taken from the
+	 * {@link GroupMembershipIndex} of the model set if it is loaded, see
+	 * {@link #queryAclModes(IModelSet, IReference)}.
+	 *
+	 * @param targets  The named target resources
+	 * @param modelSet The model set whose meta data describes the agent
+	 * @param agent    The agent
+	 * @return A SPARQL query with the targets as inline values
+	 */
+	public static String queryAclModes(Collection<? extends IReference> targets, IModelSet modelSet,
+			IReference agent) {
+		String pattern = aclModePattern(modelSet, agent);
+		StringBuilder query = new StringBuilder(ACLMODE_PREFIXES).append("select ?target ?mode where { values ?target {");
+		for (IReference target : targets) {
+			query.append(" <").append(target.getURI()).append(">");
+		}
+		return query.append(" } ").append(pattern != null ? pattern : ACLMODE_PATTERN).append("}").toString();
+	}
 }
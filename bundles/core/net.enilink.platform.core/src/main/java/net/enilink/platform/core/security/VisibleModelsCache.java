@@ -0,0 +1,204 @@
+package net.enilink.platform.core.security;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.platform.core.util.BoundedCache;
+
+/**
+ * Per-agent cache of the models of an {@link ISecureModelSet} that are visible
+ * to an agent.
+ * <p>
+ * The lists are sorted by the models' URIs. Removed models are directly
+ * removed from all cached lists. Added models are
+ * recorded and only checked for an agent when its list is accessed the next
+ * time. Changes of ACLs invalidate the lists of single agents or the whole
+ * cache.
+ */
+public class VisibleModelsCache {
+	public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+	/**
+	 * Maximum number of added models that are recorded for incremental
+	 * updates before the whole cache is cleared.
+	 */
+	static final int MAX_ADDED_MODELS = 1000;
+
+	static final Comparator<IReference> ORDER = Comparator.comparing(IReference::toString);
+
+	static class Entry {
+		final List<IReference> models;
+
+		/**
+		 * Sequence number of the last added model that is reflected by
+		 * {@link #models}.
+		 */
+		final long addedSeq;
+
+		Entry(List<IReference> models, long addedSeq) {
+			this.models = models;
+			this.addedSeq = addedSeq;
+		}
+	}
+
+	final BoundedCache<IReference, Entry> entries;
+
+	final NavigableMap<Long, IReference> addedModels = new TreeMap<>();
+
+	long addedSeq;
+
+	public VisibleModelsCache() {
+		this(Integer.getInteger("net.enilink.security.visibleModelsCache.size", DEFAULT_MAXIMUM_SIZE));
+	}
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maximumSize
+	 *            The maximum number of agents whose models are cached
+	 */
+	public VisibleModelsCache(int maximumSize) {
+		this.entries = new BoundedCache<>(maximumSize);
+	}
+
+	/**
+	 * Returns the models that are visible to the given agent.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 * @param loader
+	 *            Function that returns the visible models for an agent. The
+	 *            second argument restricts the models that should be tested
+	 *            or is <code>null</code> if all models should be returned.
+	 * @return The sorted and unmodifiable list of visible models
+	 */
+	public List<IReference> getModels(IReference agent,
+			BiFunction<IReference, Collection<IReference>, Collection<IReference>> loader) {
+		IReference key = PermissionCache.normalize(agent);
+		Entry entry;
+		Collection<IReference> candidates = null;
+		long seq, loadGeneration;
+		synchronized (this) {
+			entry = entries.get(key);
+			seq = addedSeq;
+			if (entry != null && entry.addedSeq == seq) {
+				entries.recordHit();
+				return entry.models;
+			}
+			entries.recordMiss();
+			if (entry != null) {
+				candidates = new ArrayList<>(addedModels.tailMap(entry.addedSeq, false).values());
+			}
+			loadGeneration = entries.getGeneration();
+		}
+		Collection<IReference> loaded = loader.apply(agent, candidates);
+		List<IReference> models = new ArrayList<>(loaded.size() + (entry != null ? entry.models.size() : 0));
+		if (entry != null) {
+			models.addAll(entry.models);
+		}
+		for (IReference model : loaded) {
+			model = PermissionCache.normalize(model);
+			if (entry == null || Collections.binarySearch(entry.models, model, ORDER) < 0) {
+				models.add(model);
+			}
+		}
+		models.sort(ORDER);
+		models = Collections.unmodifiableList(models);
+		synchronized (this) {
+			entries.put(key, new Entry(models, seq), loadGeneration);
+		}
+		return models;
+	}
+
+	/**
+	 * Records a model that has been added to the model set.
+	 *
+	 * @param model
+	 *            The model reference
+	 */
+	public synchronized void modelAdded(IReference model) {
+		if (addedModels.size() >= MAX_ADDED_MODELS) {
+			// forget models that are already reflected by all entries
+			long minSeq = addedSeq;
+			for (Entry entry : entries.values()) {
+				minSeq = Math.min(minSeq, entry.addedSeq);
+			}
+			addedModels.headMap(minSeq, true).clear();
+			// loaders that are still running may rely on the removed models
+			entries.invalidate();
+			if (addedModels.size() >= MAX_ADDED_MODELS) {
+				clear();
+				return;
+			}
+		}
+		addedModels.put(++addedSeq, PermissionCache.normalize(model));
+	}
+
+	/**
+	 * Removes a model that has been removed from the model set from all cached
+	 * lists.
+	 *
+	 * @param model
+	 *            The model reference
+	 */
+	public synchronized void modelRemoved(IReference model) {
+		entries.invalidate();
+		IReference normalized = PermissionCache.normalize(model);
+		addedModels.values().remove(normalized);
+		entries.replaceAll((agent, entry) -> {
+			int index = Collections.binarySearch(entry.models, normalized, ORDER);
+			if (index < 0) {
+				return entry;
+			}
+			List<IReference> models = new ArrayList<>(entry.models);
+			models.remove(index);
+			return new Entry(Collections.unmodifiableList(models), entry.addedSeq);
+		});
+	}
+
+	/**
+	 * Removes the cached models of the given agent.
+	 *
+	 * @param agent
+	 *            The agent identification
+	 */
+	public synchronized void invalidateAgent(IReference agent) {
+		entries.remove(PermissionCache.normalize(agent));
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		addedModels.clear();
+	}
+
+	/**
+	 * Returns the number of agents whose models are cached.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of successful lookups.
+	 */
+	public long getHitCount() {
+		return entries.getHitCount();
+	}
+
+	/**
+	 * Returns the number of lookups that required the evaluation of ACLs.
+	 */
+	public long getMissCount() {
+		return entries.getMissCount();
+	}
+}
@@ -0,0 +1,386 @@
+package net.enilink.platform.core.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Thread-safe map that evicts the least recently used entries if it exceeds
+ * its maximum size.
+ * <p>
+ * Entries may expire after a fixed time and can be invalidated through
+ * secondary indexes that map arbitrary references to the keys that refer to
+ * them. Each invalidation increments a generation counter that allows to
+ * discard values that have been computed concurrently to an invalidation.
+ *
+ * @param <K>
+ *            The type of the keys
+ * @param <V>
+ *            The type of the values
+ */
+public class BoundedCache<K, V> {
+	/**
+	 * Secondary index of the keys within a cache.
+	 *
+	 * @param <K>
+	 *            The type of the keys
+	 */
+	public static class Index<K> {
+		final Function<? super K, ? extends Collection<?>> references;
+
+		final Map<Object, Set<K>> keys = new HashMap<>();
+
+		Index(Function<? super K, ? extends Collection<?>> references) {
+			this.references = references;
+		}
+
+		void add(K key) {
+			for (Object reference : references.apply(key)) {
+				keys.computeIfAbsent(reference, r -> new HashSet<>()).add(key);
+			}
+		}
+
+		void remove(K key) {
+			for (Object reference : references.apply(key)) {
+				Set<K> referencingKeys = keys.get(reference);
+				if (referencingKeys != null && referencingKeys.remove(key) && referencingKeys.isEmpty()) {
+					keys.remove(reference);
+				}
+			}
+		}
+
+		/**
+		 * Returns the number of indexed references.
+		 */
+		public int size() {
+			return keys.size();
+		}
+	}
+
+	static class Entry<V> {
+		final V value;
+		final long expires;
+
+		Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	final int maximumSize;
+
+	final long ttl;
+
+	final Map<K, Entry<V>> entries;
+
+	final List<Index<K>> indexes = new ArrayList<>();
+
+	final AtomicLong hits = new AtomicLong();
+
+	final AtomicLong misses = new AtomicLong();
+
+	final AtomicLong evictions = new AtomicLong();
+
+	volatile long generation;
+
+	/**
+	 * Creates a new cache whose entries do not expire.
+	 *
+	 * @param maximumSize
+	 *            The maximum number of entries
+	 */
+	public BoundedCache(int maximumSize) {
+		this(maximumSize, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param maximumSize
+	 *            The maximum number of entries
+	 * @param ttl
+	 *            The time in milliseconds after which an entry expires
+	 */
+	public BoundedCache(int maximumSize, long ttl) {
+		this.maximumSize = maximumSize;
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() > BoundedCache.this.maximumSize) {
+					evictions.incrementAndGet();
+					unindex(eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Adds a secondary index that maps the references returned by the given
+	 * function to the keys of this cache.
+	 * <p>
+	 * Indexes have to be added before any entry is stored.
+	 *
+	 * @param references
+	 *            Function that returns the references of a key
+	 * @return The index that can be used with
+	 *         {@link #invalidate(Index, Object)}
+	 */
+	public synchronized Index<K> addIndex(Function<? super K, ? extends Collection<?>> references) {
+		Index<K> index = new Index<>(references);
+		indexes.add(index);
+		return index;
+	}
+
+	/**
+	 * Returns the value for the given key and marks it as recently used.
+	 * <p>
+	 * This method does not change the hit and miss counters, see
+	 * {@link #recordHit()} and {@link #recordMiss()}.
+	 *
+	 * @param key
+	 *            The key
+	 * @return The value or <code>null</code> if no value exists or it has
+	 *         expired
+	 */
+	public synchronized V get(K key) {
+		Entry<V> entry = entry(key);
+		return entry != null ? entry.value : null;
+	}
+
+	/**
+	 * Returns the value for the given key and updates the hit and miss
+	 * counters.
+	 *
+	 * @see #get(Object)
+	 */
+	public V lookup(K key) {
+		V value = get(key);
+		if (value == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the time when the entry for the given key expires.
+	 *
+	 * @param key
+	 *            The key
+	 * @return The expiration time in milliseconds or <code>0</code> if no entry
+	 *         exists
+	 */
+	public synchronized long getExpiration(K key) {
+		Entry<V> entry = entry(key);
+		return entry != null ? entry.expires : 0;
+	}
+
+	Entry<V> entry(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry != null && entry.expires <= System.currentTimeMillis()) {
+			// expired entry
+			evictions.incrementAndGet();
+			entries.remove(key);
+			unindex(key);
+			entry = null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Stores a value for the given key.
+	 *
+	 * @param key
+	 *            The key
+	 * @param value
+	 *            The value
+	 */
+	public synchronized void put(K key, V value) {
+		if (maximumSize <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long expires = ttl > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttl;
+		Entry<V> old = entries.put(key, new Entry<>(value, expires));
+		if (old == null) {
+			for (Index<K> index : indexes) {
+				index.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Stores a value for the given key if this cache has not been invalidated
+	 * since the value was computed.
+	 *
+	 * @param key
+	 *            The key
+	 * @param value
+	 *            The value
+	 * @param generation
+	 *            The value of {@link #getGeneration()} before the value was
+	 *            computed
+	 * @return <code>true</code> if the value was stored, else
+	 *         <code>false</code>
+	 */
+	public synchronized boolean put(K key, V value, long generation) {
+		if (generation != this.generation) {
+			return false;
+		}
+		put(key, value);
+		return true;
+	}
+
+	/**
+	 * Replaces the values of all entries without changing their order or
+	 * expiration time.
+	 *
+	 * @param function
+	 *            Function that returns the new value of an entry
+	 */
+	public synchronized void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		entries.replaceAll((key, entry) -> new Entry<>(function.apply(key, entry.value), entry.expires));
+	}
+
+	/**
+	 * Returns a snapshot of the cached values.
+	 */
+	public synchronized List<V> values() {
+		List<V> values = new ArrayList<>(entries.size());
+		for (Entry<V> entry : entries.values()) {
+			values.add(entry.value);
+		}
+		return values;
+	}
+
+	/**
+	 * Removes the entry for the given key.
+	 *
+	 * @param key
+	 *            The key
+	 */
+	public synchronized void remove(K key) {
+		generation++;
+		if (entries.remove(key) != null) {
+			unindex(key);
+		}
+	}
+
+	/**
+	 * Removes all entries whose keys refer to the given reference.
+	 *
+	 * @param index
+	 *            An index of this cache
+	 * @param reference
+	 *            The reference
+	 */
+	public synchronized void invalidate(Index<K> index, Object reference) {
+		generation++;
+		Set<K> keys = index.keys.get(reference);
+		if (keys != null) {
+			for (K key : new ArrayList<>(keys)) {
+				entries.remove(key);
+				unindex(key);
+			}
+		}
+	}
+
+	/**
+	 * Marks all values that are currently computed as outdated without
+	 * removing any entry.
+	 */
+	public synchronized void invalidate() {
+		generation++;
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public synchronized void clear() {
+		generation++;
+		entries.clear();
+		for (Index<K> index : indexes) {
+			index.keys.clear();
+		}
+	}
+
+	void unindex(K key) {
+		for (Index<K> index : indexes) {
+			index.remove(key);
+		}
+	}
+
+	/**
+	 * Returns a counter that changes whenever entries of this cache are
+	 * invalidated.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Returns the number of cached entries.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Records a successful lookup.
+	 */
+	public void recordHit() {
+		hits.incrementAndGet();
+	}
+
+	/**
+	 * Records a lookup that did not find a cached entry.
+	 */
+	public void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of successful lookups.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a cached entry.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of entries that were removed because they expired or
+	 * the maximum size was exceeded.
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Returns the ratio of successful lookups to all lookups.
+	 */
+	public double getHitRatio() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return total == 0 ? 1.0 : (double) hitCount / total;
+	}
+}
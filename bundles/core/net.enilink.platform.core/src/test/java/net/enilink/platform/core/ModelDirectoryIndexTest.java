@@ -0,0 +1,131 @@
+package net.enilink.platform.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModelDirectoryIndexTest {
+	Path root;
+
+	Path models;
+
+	/**
+	 * The files that have been parsed by the index.
+	 */
+	final List<Path> parsed = new ArrayList<>();
+
+	final ModelDirectoryIndex.OntologyFinder findOntology = file -> {
+		synchronized (parsed) {
+			parsed.add(file.getFileName());
+		}
+		if (file.getFileName().toString().startsWith("broken")) {
+			throw new IOException("Invalid model file");
+		}
+		return file.getFileName().toString().startsWith("ontology") ? "test:" + file.getFileName() : null;
+	};
+
+	@Before
+	public void createDirectory() throws IOException {
+		root = Files.createTempDirectory("models-index");
+		models = Files.createDirectory(root.resolve("models"));
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	Map<String, String> ontologies(List<ModelDirectoryIndex.Entry> entries) {
+		return entries.stream().collect(Collectors.toMap(e -> models.relativize(e.file).toString(),
+				e -> e.ontology != null ? e.ontology : ModelDirectoryIndex.NO_ONTOLOGY));
+	}
+
+	@Test
+	public void testUpdate() throws IOException {
+		Files.writeString(models.resolve("ontology1.ttl"), "a");
+		Files.createDirectory(models.resolve("sub"));
+		Files.writeString(models.resolve("sub/data.owl"), "b");
+		Files.writeString(models.resolve("ignored.txt"), "c");
+
+		ModelDirectoryIndex index = new ModelDirectoryIndex(models);
+		index.load();
+		List<ModelDirectoryIndex.Entry> entries = index.update(findOntology);
+		Assert.assertEquals(Map.of("ontology1.ttl", "test:ontology1.ttl", "sub/data.owl", "-"), ontologies(entries));
+		Assert.assertEquals(2, parsed.size());
+		index.save();
+		Assert.assertTrue(Files.isRegularFile(root.resolve("models.index")));
+
+		// unchanged files are not parsed again
+		parsed.clear();
+		index = new ModelDirectoryIndex(models);
+		index.load();
+		entries = index.update(findOntology);
+		Assert.assertEquals(Map.of("ontology1.ttl", "test:ontology1.ttl", "sub/data.owl", "-"), ontologies(entries));
+		Assert.assertTrue(parsed.isEmpty());
+		Assert.assertFalse(index.modified);
+
+		// changed, added and removed files
+		Path changed = models.resolve("ontology1.ttl");
+		Files.writeString(changed, "changed");
+		Files.setLastModifiedTime(changed, FileTime.fromMillis(Files.getLastModifiedTime(changed).toMillis() + 1000));
+		Files.writeString(models.resolve("ontology2.ttl"), "d");
+		Files.delete(models.resolve("sub/data.owl"));
+		entries = index.update(findOntology);
+		Assert.assertEquals(Map.of("ontology1.ttl", "test:ontology1.ttl", "ontology2.ttl", "test:ontology2.ttl"),
+				ontologies(entries));
+		Assert.assertEquals(2, parsed.size());
+		Assert.assertTrue(index.modified);
+		index.save();
+
+		index = new ModelDirectoryIndex(models);
+		index.load();
+		Assert.assertEquals(2, index.entries.size());
+	}
+
+	@Test
+	public void testInvalidIndex() throws IOException {
+		Files.writeString(models.resolve("ontology1.ttl"), "a");
+		Files.writeString(root.resolve("models.index"), ModelDirectoryIndex.HEADER + "\nnot-a-number\t1\t-\tontology1.ttl\n");
+
+		ModelDirectoryIndex index = new ModelDirectoryIndex(models);
+		index.load();
+		Assert.assertTrue(index.entries.isEmpty());
+		List<ModelDirectoryIndex.Entry> entries = index.update(findOntology);
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals(1, parsed.size());
+	}
+
+	@Test
+	public void testFailedFilesAreParsedAgain() throws IOException {
+		Files.writeString(models.resolve("ontology1.ttl"), "a");
+		Files.writeString(models.resolve("broken.ttl"), "b");
+
+		ModelDirectoryIndex index = new ModelDirectoryIndex(models);
+		index.load();
+		List<ModelDirectoryIndex.Entry> entries = index.update(findOntology);
+		Assert.assertEquals(Map.of("ontology1.ttl", "test:ontology1.ttl", "broken.ttl", "-"), ontologies(entries));
+		index.save();
+
+		// the failed file is not persisted and hence parsed again
+		parsed.clear();
+		index = new ModelDirectoryIndex(models);
+		index.load();
+		Assert.assertEquals(1, index.entries.size());
+		index.update(findOntology);
+		Assert.assertEquals(List.of(models.resolve("broken.ttl").getFileName()), parsed);
+	}
+}
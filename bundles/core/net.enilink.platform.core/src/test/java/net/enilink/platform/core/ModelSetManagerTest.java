@@ -1,5 +1,7 @@
 package net.enilink.platform.core;
 
+import net.enilink.komma.core.IEntityManager;
+import net.enilink.komma.core.IReference;
 import net.enilink.komma.core.IStatement;
 import net.enilink.komma.core.Statement;
 import net.enilink.komma.core.URI;
@@ -12,19 +14,27 @@ import net.enilink.komma.model.base.URIHandler;
 import net.enilink.platform.core.security.ISecureEntity;
 import net.enilink.platform.core.security.SecurityUtil;
 import net.enilink.platform.security.auth.EnilinkPrincipal;
+import net.enilink.vocab.acl.WEBACL;
 import net.enilink.vocab.rdf.RDF;
 import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import javax.security.auth.Subject;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class ModelSetManagerTest {
-	@Test
-	public void testCreateMetadataAndDataModelSets() {
+	static final URI metadataModelSet = URIs.createURI("urn:enilink:metadata");
+	static final URI dataModelSet = URIs.createURI("urn:enilink:data");
+
+	@BeforeClass
+	public static void registerPlatformHandler() {
 		// add handler for platform: URIs which normally would only work within an OSGi
 		// container using the KOMMA workbench bundle
 		ExtensibleURIConverter.registerSharedUriHandler(new URIHandler() {
@@ -41,16 +51,21 @@ public class ModelSetManagerTest {
 				return getClass().getResource(pathString);
 			}
 		});
+	}
 
-		URI metadataModelSet = URIs.createURI("urn:enilink:metadata");
-		URI dataModelSet = URIs.createURI("urn:enilink:data");
+	ConfigHashGraph createConfig() {
 		URI memoryModelSetType = MODELS.NAMESPACE_URI.appendLocalPart("MemoryModelSet");
 
 		ConfigHashGraph config = new ConfigHashGraph();
 		config.load();
 		config.add(metadataModelSet, RDF.PROPERTY_TYPE, memoryModelSetType);
 		config.add(dataModelSet, RDF.PROPERTY_TYPE, memoryModelSetType);
+		return config;
+	}
 
+	@Test
+	public void testCreateMetadataAndDataModelSets() {
+		ConfigHashGraph config = createConfig();
 		ModelSetManager manager = new ModelSetManager();
 		IModelSet metaModelSet = manager.createMetaModelSet(config);
 		IModelSet data = null;
@@ -78,4 +93,45 @@ public class ModelSetManagerTest {
 			metaModelSet.dispose();
 		}
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testLazyModels() {
+		ConfigHashGraph config = createConfig();
+		// lazy models are created by the behaviour through the shared instance
+		ModelSetManager manager = ModelSetManager.INSTANCE;
+		IModelSet metaModelSet = manager.createMetaModelSet(config);
+		IModelSet data = null;
+		try {
+			data = manager.createModelSet(config, metaModelSet.createModel(metadataModelSet));
+			URI lazy1 = URIs.createURI("test:lazy1");
+			URI lazy2 = URIs.createURI("test:lazy2");
+			manager.registerLazyModel(data, lazy1);
+			manager.registerLazyModel(data, lazy2);
+			// allow the current user to read the models
+			IEntityManager metaData = data.getMetaDataManager();
+			for (URI model : Arrays.asList(lazy1, lazy2)) {
+				IReference acl = metaData.createReference();
+				metaData.add(Arrays.asList(new Statement(acl, WEBACL.PROPERTY_ACCESSTO, model),
+						new Statement(acl, WEBACL.PROPERTY_AGENT, SecurityUtil.UNKNOWN_USER),
+						new Statement(acl, WEBACL.PROPERTY_MODE, WEBACL.MODE_READ)));
+			}
+
+			// created on first access
+			Assert.assertNotNull(data.getModel(lazy1, false));
+
+			// created if the models are listed
+			Set<URI> models = new HashSet<>();
+			for (IModel model : data.getModels()) {
+				models.add(model.getURI());
+			}
+			Assert.assertTrue(models.contains(lazy1));
+			Assert.assertTrue(models.contains(lazy2));
+		} finally {
+			manager.shutdown();
+			if (data != null) {
+				data.dispose();
+			}
+			metaModelSet.dispose();
+		}
+	}
+}
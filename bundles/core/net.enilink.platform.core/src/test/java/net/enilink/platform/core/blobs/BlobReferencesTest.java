@@ -0,0 +1,79 @@
+package net.enilink.platform.core.blobs;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+
+import net.enilink.komma.core.IEntityManager;
+import net.enilink.komma.core.IGraph;
+import net.enilink.komma.core.LinkedHashGraph;
+import net.enilink.komma.core.Literal;
+import net.enilink.komma.core.Statement;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.komma.model.IModelSet;
+import net.enilink.komma.model.IModelSetFactory;
+import net.enilink.komma.model.MODELS;
+import net.enilink.komma.model.ModelPlugin;
+import net.enilink.komma.model.ModelSetModule;
+import net.enilink.vocab.rdf.RDF;
+import net.enilink.vocab.rdfs.RDFS;
+
+public class BlobReferencesTest {
+	static final String KEY = "sha1-" + "0123456789abcdef".repeat(2) + "01234567";
+
+	Set<String> keys(Object node) {
+		Set<String> keys = new HashSet<>();
+		BlobReferences.addKey(node, keys);
+		return keys;
+	}
+
+	@Test
+	public void testReferences() {
+		Set<String> key = Set.of(KEY);
+		Assert.assertEquals(key, keys(URIs.createURI("blobs:" + KEY)));
+		// URLs and plain keys of the file service
+		Assert.assertEquals(key, keys(URIs.createURI("http://example.org/files/" + KEY)));
+		Assert.assertEquals(key, keys(URIs.createURI("http://example.org/ctx/files/" + KEY + "?download")));
+		Assert.assertEquals(key, keys(new Literal(KEY)));
+		Assert.assertEquals(key, keys(new Literal("/files/" + KEY)));
+		Assert.assertEquals(key, keys(new Literal("<a href=\"/files/" + KEY + "\">file</a>")));
+
+		Assert.assertTrue(keys(URIs.createURI("http://example.org/" + KEY)).isEmpty());
+		Assert.assertTrue(keys(URIs.createURI("http://example.org/files/" + KEY + "0x")).isEmpty());
+		Assert.assertTrue(keys(new Literal("file " + KEY)).isEmpty());
+	}
+
+	@Test
+	public void testFind() {
+		IModelSetFactory factory = Guice.createInjector(
+				new ModelSetModule(ModelPlugin.createModelSetModule(getClass()
+						.getClassLoader()))).getInstance(IModelSetFactory.class);
+		IGraph config = new LinkedHashGraph();
+		URI msUri = URIs.createURI("test:modelSet");
+		config.add(msUri, RDF.PROPERTY_TYPE, MODELS.TYPE_MODELSET);
+		config.add(msUri, RDF.PROPERTY_TYPE,
+				MODELS.NAMESPACE_URI.appendLocalPart("MemoryModelSet"));
+		IModelSet modelSet = factory.createModelSet(msUri, config);
+		try {
+			String otherKey = KEY.replace("sha1-0", "sha1-1");
+			IEntityManager em = modelSet.createModel(
+					URIs.createURI("test:model")).getManager();
+			URI doc = URIs.createURI("test:doc");
+			em.add(new Statement(doc, RDFS.PROPERTY_SEEALSO, URIs
+					.createURI("blobs:" + KEY)));
+			em.add(new Statement(doc, RDFS.PROPERTY_COMMENT, new Literal(
+					"/files/" + otherKey)));
+			em.add(new Statement(doc, RDFS.PROPERTY_LABEL, new Literal(
+					"no reference")));
+			Assert.assertEquals(Set.of(KEY, otherKey),
+					BlobReferences.find(modelSet));
+		} finally {
+			modelSet.dispose();
+		}
+	}
+}
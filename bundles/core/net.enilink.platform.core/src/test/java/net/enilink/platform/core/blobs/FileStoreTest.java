@@ -1,15 +1,28 @@
 package net.enilink.platform.core.blobs;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
 
 import net.enilink.platform.core.blobs.FileStore;
 
@@ -46,4 +59,287 @@ public class FileStoreTest {
 		}
 		Files.delete(root);
 	}
+
+	@Test
+	public void streamStoreTest() throws IOException {
+		final Path root = Files.createTempDirectory("filestore-test");
+		FileStore store = new FileStore(root);
+		SecureRandom random = new SecureRandom();
+
+		byte[] origData = new byte[1024 * 1024];
+		random.nextBytes(origData);
+		String key = store.store(new ByteArrayInputStream(origData));
+		Assert.assertEquals(origData.length, store.size(key));
+		try (DataInputStream in = new DataInputStream(store.openStream(key))) {
+			byte[] data = new byte[origData.length];
+			in.readFully(data);
+			Assert.assertArrayEquals(origData, data);
+		}
+		// same contents lead to the same key
+		Assert.assertEquals(key, store.store(Channels
+				.newChannel(new ByteArrayInputStream(origData))));
+		Assert.assertEquals(key, store.store(origData));
+
+		Path file = Files.createTempFile("filestore-test", ".tmp");
+		Files.write(file, origData);
+		Assert.assertEquals(key, store.store(file, false));
+		Assert.assertTrue(Files.exists(file));
+		store.delete(key);
+		Assert.assertEquals(key, store.store(file, true));
+		Assert.assertFalse(Files.exists(file));
+
+		store.delete(key);
+		try (DirectoryStream<?> ds = Files.newDirectoryStream(root)) {
+			Assert.assertTrue("Store directory should be empty.", !ds
+					.iterator().hasNext());
+		}
+		Files.delete(root);
+	}
+
+	@Test
+	public void chunkedStoreTest() throws Exception {
+		final Path root = Files.createTempDirectory("filestore-test");
+		FileStore store = new FileStore(root, true);
+		SecureRandom random = new SecureRandom();
+
+		byte[] origData = new byte[8 * 1024 * 1024];
+		random.nextBytes(origData);
+		// modify a small region and insert some bytes
+		byte[] modifiedData = Arrays.copyOf(origData, origData.length + 10);
+		System.arraycopy(origData, 1000, modifiedData, 1010,
+				origData.length - 1000);
+		modifiedData[origData.length / 2] ^= 1;
+
+		String key = store.store(origData);
+		long chunks = countFiles(root.resolve("chunks"));
+		String modifiedKey = store.store(modifiedData);
+		Assert.assertNotEquals(key, modifiedKey);
+		// only the chunks around the modifications are added
+		Assert.assertTrue(countFiles(root.resolve("chunks")) < chunks + 4);
+
+		for (byte[] data : Arrays.asList(origData, modifiedData)) {
+			String dataKey = data == origData ? key : modifiedKey;
+			Assert.assertEquals(data.length, store.size(dataKey));
+			try (DataInputStream in = new DataInputStream(
+					store.openStream(dataKey))) {
+				byte[] readData = new byte[data.length];
+				in.readFully(readData);
+				Assert.assertArrayEquals(data, readData);
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			store.transferTo(dataKey, 100000, 3000000,
+					Channels.newChannel(out));
+			Assert.assertArrayEquals(
+					Arrays.copyOfRange(data, 100000, 3100000),
+					out.toByteArray());
+		}
+
+		// chunked blobs are also readable if chunking is disabled
+		Assert.assertTrue(new FileStore(root).exists(key));
+		Assert.assertTrue(store.delete(key));
+		Assert.assertFalse(store.exists(key));
+		Assert.assertTrue(store.exists(modifiedKey));
+		Assert.assertTrue(store.delete(modifiedKey));
+		// chunks are only removed by the collector
+		ageFiles(root);
+		BlobCollector.Report report = new BlobCollector(store).setBatchDelay(0)
+				.collect(k -> true, false);
+		Assert.assertTrue(report.getOrphanChunks() > 0);
+		deleteStore(root);
+	}
+
+	@Test
+	public void algorithmsTest() throws Exception {
+		final Path root = Files.createTempDirectory("filestore-test");
+		SecureRandom random = new SecureRandom();
+
+		// larger than multiple blocks of the tree digest
+		byte[] origData = new byte[5 * 1024 * 1024 + 17];
+		random.nextBytes(origData);
+		String sha1Key = new FileStore(root).store(origData);
+		for (String algorithm : Arrays.asList(FileStore.MD5, FileStore.SHA1,
+				FileStore.SHA256, FileStore.MURMUR3)) {
+			FileStore store = new FileStore(root, false, algorithm);
+			String key = store.store(origData);
+			Assert.assertTrue(key.startsWith(algorithm + "-"));
+			// keys are stable
+			Assert.assertEquals(key,
+					store.store(new ByteArrayInputStream(origData)));
+			try (DataInputStream in = new DataInputStream(store.openStream(key))) {
+				byte[] data = new byte[origData.length];
+				in.readFully(data);
+				Assert.assertArrayEquals(origData, data);
+			}
+			// keys of other algorithms remain readable
+			Assert.assertEquals(origData.length, store.size(sha1Key));
+			if (!key.equals(sha1Key)) {
+				store.delete(key);
+			}
+		}
+		// chunked blobs use the same key as unchunked ones
+		FileStore chunkedStore = new FileStore(root, true, FileStore.MURMUR3);
+		String chunkedKey = chunkedStore.store(origData);
+		Assert.assertEquals(new FileStore(root, false, FileStore.MURMUR3)
+				.store(new ByteArrayInputStream(origData)), chunkedKey);
+		try (DataInputStream in = new DataInputStream(chunkedStore.openStream(chunkedKey))) {
+			byte[] data = new byte[origData.length];
+			in.readFully(data);
+			Assert.assertArrayEquals(origData, data);
+		}
+		chunkedStore.delete(chunkedKey);
+		ageFiles(root);
+		new BlobCollector(chunkedStore).setBatchDelay(0).collect(k -> true, false);
+
+		FileStore store = new FileStore(root, false, FileStore.MURMUR3);
+		String emptyKey = store.store(new byte[0]);
+		String oneByteKey = store.store(new byte[1]);
+		Assert.assertNotEquals(emptyKey, oneByteKey);
+		for (String key : Arrays.asList(sha1Key, emptyKey, oneByteKey)) {
+			store.delete(key);
+		}
+		deleteStore(root);
+	}
+
+	@Test
+	public void metadataTest() throws IOException {
+		final Path root = Files.createTempDirectory("filestore-test");
+		FileStore store = new FileStore(root);
+		String key = store.store(new byte[] { 1, 2, 3 });
+
+		// properties file of earlier versions
+		Path legacyPath = store.metaDataPath(store.pathForKey(key));
+		Properties legacy = new Properties();
+		legacy.setProperty("contentType", "text/plain");
+		legacy.setProperty("fileName", "a=b\tc\\d\n");
+		try (OutputStream out = Files.newOutputStream(legacyPath)) {
+			legacy.store(out, "");
+		}
+		Assert.assertEquals(legacy, store.getProperties(key));
+		Assert.assertFalse("Properties file should have been migrated.",
+				Files.exists(legacyPath));
+		Assert.assertTrue("Properties file should have been kept as backup.",
+				Files.exists(legacyPath.resolveSibling(legacyPath.getFileName()
+						+ MetadataIndex.BACKUP_SUFFIX)));
+
+		Properties properties = new Properties();
+		properties.setProperty("contentType", "application/octet-stream");
+		properties.setProperty("size", "3");
+		store.setProperties(key, properties);
+		Properties expected = new Properties();
+		expected.putAll(legacy);
+		expected.setProperty("size", "3");
+		Assert.assertEquals(expected, store.getProperties(key));
+
+		// simulate an interrupted write
+		Files.write(root.resolve(MetadataIndex.LOG_FILE),
+				"0\tsha1-incomplete".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+		MetadataIndex index = new MetadataIndex(root);
+		Assert.assertEquals(expected, index.get(key));
+		index.remove(key);
+		Assert.assertTrue(new MetadataIndex(root).get(key).isEmpty());
+		store.delete(key);
+		deleteStore(root);
+	}
+
+	@Test
+	public void collectorTest() throws Exception {
+		final Path root = Files.createTempDirectory("filestore-test");
+		FileStore store = new FileStore(root, true);
+		SecureRandom random = new SecureRandom();
+
+		byte[] data = new byte[4 * 1024 * 1024];
+		random.nextBytes(data);
+		String referenced = store.store(data);
+		String orphan = store.store(new byte[] { 1, 2, 3 });
+		Properties properties = new Properties();
+		properties.setProperty("contentType", "text/plain");
+		store.setProperties(referenced, properties);
+		store.setProperties(orphan, properties);
+
+		BlobCollector collector = new BlobCollector(store).setBatchDelay(0);
+		// recently stored blobs are kept
+		BlobCollector.Report report = collector.collect(key -> false, false);
+		Assert.assertTrue(report.getOrphans().isEmpty());
+		Assert.assertTrue(store.exists(orphan));
+
+		ageFiles(root);
+
+		report = collector.collect(referenced::equals, true);
+		Assert.assertEquals(Collections.singleton(orphan), report.getOrphans());
+		Assert.assertEquals(0, report.getDeleted());
+		Assert.assertTrue(store.exists(orphan));
+
+		// blobs and chunks that are reused during a collection are kept
+		report = collector.collect(key -> {
+			try {
+				Assert.assertEquals(key, store.store(key.equals(referenced)
+						? data : new byte[] { 1, 2, 3 }));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return false;
+		}, false);
+		Assert.assertEquals(0, report.getDeleted());
+		Assert.assertTrue(report.getOrphans().isEmpty());
+		Assert.assertEquals(data.length, store.size(referenced));
+		Assert.assertTrue(store.exists(orphan));
+
+		ageFiles(root);
+
+		report = collector.collect(referenced::equals, false);
+		Assert.assertEquals(1, report.getDeleted());
+		Assert.assertFalse(store.exists(orphan));
+		Assert.assertTrue(store.getProperties(orphan).isEmpty());
+		Assert.assertEquals(properties, store.getProperties(referenced));
+		Assert.assertEquals(data.length, store.size(referenced));
+
+		report = collector.collect(key -> false, false);
+		Assert.assertEquals(Collections.singleton(referenced),
+				report.getOrphans());
+		Assert.assertTrue(report.getOrphanChunks() > 0);
+		Assert.assertFalse(store.exists(referenced));
+		Assert.assertTrue(store.getProperties(referenced).isEmpty());
+		// only the meta-data log remains
+		Assert.assertEquals(1, countFiles(root));
+		deleteStore(root);
+	}
+
+	/**
+	 * Makes all files older than the grace period of the collector.
+	 */
+	void ageFiles(Path root) throws IOException {
+		FileTime past = FileTime.fromMillis(System.currentTimeMillis() - 2
+				* 24 * 60 * 60 * 1000L);
+		try (Stream<Path> files = Files.walk(root)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.setLastModifiedTime(file, past);
+			}
+		}
+	}
+
+	/**
+	 * Asserts that a store contains no files except for its meta-data log
+	 * and deletes its root directory.
+	 */
+	void deleteStore(Path root) throws IOException {
+		try (Stream<Path> files = Files.walk(root)) {
+			Assert.assertEquals("Store directory should be empty.",
+					Collections.emptyList(),
+					files.filter(Files::isRegularFile)
+							.filter(file -> !file.equals(root.resolve(MetadataIndex.LOG_FILE)))
+							.toList());
+		}
+		try (Stream<Path> files = Files.walk(root)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	long countFiles(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
 }
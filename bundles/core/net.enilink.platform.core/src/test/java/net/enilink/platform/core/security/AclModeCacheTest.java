@@ -0,0 +1,88 @@
+package net.enilink.platform.core.security;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.vocab.acl.WEBACL;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AclModeCacheTest {
+	final static URI alice = SecurityUtil.usernameToUri("alice");
+	final static URI bob = SecurityUtil.usernameToUri("bob");
+	final static List<IReference> contexts = Collections.singletonList(URIs.createURI("test:model"));
+
+	@Test
+	public void testInvalidation() {
+		AclModeCache cache = new AclModeCache(100, 60000);
+		URI r1 = URIs.createURI("test:r1");
+		URI r2 = URIs.createURI("test:r2");
+		Set<IReference> modes = Collections.singleton(WEBACL.MODE_WRITE);
+
+		Assert.assertNull(cache.get(contexts, alice, r1));
+		cache.put(contexts, alice, r1, modes, cache.getGeneration());
+		cache.put(contexts, alice, r2, modes, cache.getGeneration());
+		cache.put(contexts, bob, r1, modes, cache.getGeneration());
+		Assert.assertEquals(modes, cache.get(contexts, alice, r1));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		cache.invalidateResource(r1);
+		Assert.assertNull(cache.get(contexts, alice, r1));
+		Assert.assertNull(cache.get(contexts, bob, r1));
+		Assert.assertEquals(modes, cache.get(contexts, alice, r2));
+
+		cache.invalidateAgent(alice);
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		AclModeCache cache = new AclModeCache(10, 60000);
+		for (int i = 0; i < 20; i++) {
+			cache.put(contexts, alice, URIs.createURI("test:r" + i), Collections.emptySet(), cache.getGeneration());
+		}
+		Assert.assertEquals(10, cache.size());
+		Assert.assertNull(cache.get(contexts, alice, URIs.createURI("test:r0")));
+		Assert.assertNotNull(cache.get(contexts, alice, URIs.createURI("test:r19")));
+		// evicted entries must also be removed from the indexes
+		Assert.assertEquals(10, cache.keysByResource.size());
+	}
+
+	@Test
+	public void testStalePut() {
+		AclModeCache cache = new AclModeCache(100, 60000);
+		URI r1 = URIs.createURI("test:r1");
+		long generation = cache.getGeneration();
+		// modes are computed while the ACLs are changed concurrently
+		cache.invalidateResource(r1);
+		cache.put(contexts, alice, r1, Collections.singleton(WEBACL.MODE_WRITE), generation);
+		Assert.assertNull(cache.get(contexts, alice, r1));
+	}
+
+	@Test
+	public void testContextInvalidation() {
+		AclModeCache cache = new AclModeCache(100, 60000);
+		URI r1 = URIs.createURI("test:r1");
+		List<IReference> otherContexts = Collections.singletonList(URIs.createURI("test:other"));
+		cache.put(contexts, alice, r1, Collections.emptySet(), cache.getGeneration());
+		cache.put(otherContexts, alice, r1, Collections.emptySet(), cache.getGeneration());
+		cache.invalidateContext(contexts.get(0));
+		Assert.assertNull(cache.get(contexts, alice, r1));
+		Assert.assertNotNull(cache.get(otherContexts, alice, r1));
+	}
+
+	@Test
+	public void testExpiration() {
+		AclModeCache cache = new AclModeCache(100, 0);
+		URI r1 = URIs.createURI("test:r1");
+		cache.put(contexts, alice, r1, Collections.singleton(WEBACL.MODE_WRITE), cache.getGeneration());
+		Assert.assertNull(cache.get(contexts, alice, r1));
+		Assert.assertEquals(0, cache.keysByResource.size());
+	}
+}
@@ -0,0 +1,85 @@
+package net.enilink.platform.core.security;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import net.enilink.komma.core.BlankNode;
+import net.enilink.komma.core.IReference;
+import net.enilink.komma.core.Literal;
+import net.enilink.komma.core.Statement;
+import net.enilink.komma.core.StatementPattern;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.platform.core.security.SecureDataManager.AddOp;
+import net.enilink.platform.core.security.SecureDataManager.Op;
+import net.enilink.platform.core.security.SecureDataManager.RemoveOp;
+import net.enilink.platform.core.security.SecureDataManager.WriteMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockedOpsTest {
+	final static URI p = URIs.createURI("test:p");
+
+	@Test
+	public void testSpilledBlockedOps() {
+		IReference b1 = new BlankNode();
+		IReference b2 = new BlankNode();
+		try (BlockedOps blockedOps = new BlockedOps(1)) {
+			blockedOps.add(new AddOp(new Statement(b1, p, b2)));
+			blockedOps.add(new AddOp(new Statement(b1, p, new Literal("value"))));
+			blockedOps.add(new AddOp(new Statement(b2, p, URIs.createURI("test:o"))));
+			Assert.assertNotNull(blockedOps.file);
+			Assert.assertEquals(Collections.singleton(b1), blockedOps.roots());
+
+			Collection<Op> ops = blockedOps.remove(b1);
+			Assert.assertEquals(2, ops.size());
+			for (Op op : ops) {
+				// blank nodes must be the original objects
+				Assert.assertSame(b1, op.stmt.getSubject());
+			}
+			Assert.assertEquals(Collections.singleton(b2), blockedOps.roots());
+			Assert.assertEquals(1, blockedOps.remove(b2).size());
+			Assert.assertTrue(blockedOps.isEmpty());
+			Assert.assertNull(blockedOps.remove(b2));
+		}
+	}
+
+	@Test
+	public void testReleasedBlankNodes() {
+		IReference b1 = new BlankNode();
+		IReference b2 = new BlankNode();
+		try (BlockedOps blockedOps = new BlockedOps(2)) {
+			blockedOps.add(new AddOp(new Statement(b1, p, b2)));
+			blockedOps.add(new AddOp(new Statement(b1, p, new Literal("value"))));
+			blockedOps.add(new AddOp(new Statement(b2, p, new Literal("value"))));
+			Assert.assertEquals(2, blockedOps.file.blankNodes.size());
+
+			blockedOps.remove(b1);
+			// b2 is still referenced by its own spilled operation
+			Assert.assertEquals(Collections.singleton(b2.toString()), blockedOps.file.blankNodes.keySet());
+			Assert.assertSame(b2, blockedOps.remove(b2).iterator().next().stmt.getSubject());
+			Assert.assertTrue(blockedOps.file.blankNodes.isEmpty());
+		}
+	}
+
+	@Test
+	public void testSpilledQueue() {
+		try (OpQueue queue = new OpQueue(2)) {
+			for (int i = 0; i < 5; i++) {
+				Op op = new RemoveOp(new StatementPattern(URIs.createURI("test:s" + i), p, null, null));
+				op.mode = WriteMode.MODIFY;
+				queue.add(op);
+			}
+			Assert.assertEquals(3, queue.spilledCount);
+			for (int i = 0; i < 5; i++) {
+				Op op = queue.remove();
+				Assert.assertFalse(op.isAdd());
+				Assert.assertEquals(WriteMode.MODIFY, op.mode);
+				Assert.assertEquals(URIs.createURI("test:s" + i), op.stmt.getSubject());
+				Assert.assertNull(op.stmt.getObject());
+			}
+			Assert.assertTrue(queue.isEmpty());
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package net.enilink.platform.core.security;
+
+import net.enilink.komma.core.Statement;
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.vocab.foaf.FOAF;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GroupMembershipIndexTest {
+	final static URI alice = SecurityUtil.usernameToUri("alice");
+	final static URI team = URIs.createURI("test:team");
+	final static URI department = URIs.createURI("test:department");
+
+	@Test
+	public void testNestedGroupChanges() {
+		GroupMembershipIndex index = new GroupMembershipIndex();
+		index.statementChanged(new Statement(team, FOAF.PROPERTY_MEMBER, alice), true);
+		Assert.assertTrue(index.isMemberOf(alice, team));
+		Assert.assertFalse(index.isMemberOf(alice, department));
+
+		// nest the team into the department
+		index.statementChanged(new Statement(department, FOAF.PROPERTY_MEMBER, team), true);
+		Assert.assertTrue(index.isMemberOf(alice, department));
+		Assert.assertTrue(index.isMemberOf(team, department));
+		Assert.assertTrue(index.getGroups(alice).contains(department));
+
+		// remove the nested membership again
+		index.statementChanged(new Statement(department, FOAF.PROPERTY_MEMBER, team), false);
+		Assert.assertFalse(index.isMemberOf(alice, department));
+		Assert.assertFalse(index.getGroups(alice).contains(department));
+		Assert.assertTrue(index.isMemberOf(alice, team));
+
+		index.statementChanged(new Statement(team, FOAF.PROPERTY_MEMBER, alice), false);
+		Assert.assertTrue(index.getGroups(alice).isEmpty());
+	}
+}
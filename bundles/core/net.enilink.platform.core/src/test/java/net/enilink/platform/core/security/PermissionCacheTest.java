@@ -0,0 +1,69 @@
+package net.enilink.platform.core.security;
+
+import net.enilink.komma.core.URI;
+import net.enilink.komma.core.URIs;
+import net.enilink.vocab.acl.WEBACL;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PermissionCacheTest {
+	final static URI alice = SecurityUtil.usernameToUri("alice");
+	final static URI bob = SecurityUtil.usernameToUri("bob");
+	final static URI model1 = URIs.createURI("http://enilink.net/test/model1");
+	final static URI model2 = URIs.createURI("http://enilink.net/test/model2");
+
+	@Test
+	public void testTargetedInvalidation() {
+		PermissionCache cache = new PermissionCache(100, 60000);
+		Assert.assertTrue(cache.isReadable(model1, alice, (m, a) -> true));
+		Assert.assertFalse(cache.isReadable(model1, bob, (m, a) -> false));
+		Assert.assertEquals(WEBACL.MODE_WRITE, cache.writeMode(model2, alice, (m, a) -> WEBACL.MODE_WRITE));
+		Assert.assertNull(cache.writeMode(model2, bob, (m, a) -> null));
+		Assert.assertEquals(4, cache.getMissCount());
+
+		// cached values are returned without calling the loader
+		Assert.assertTrue(cache.isReadable(model1, alice, (m, a) -> false));
+		Assert.assertNull(cache.writeMode(model2, bob, (m, a) -> WEBACL.MODE_WRITE));
+		Assert.assertEquals(2, cache.getHitCount());
+
+		cache.invalidateModel(model1);
+		Assert.assertFalse(cache.isReadable(model1, alice, (m, a) -> false));
+		Assert.assertEquals(WEBACL.MODE_WRITE, cache.writeMode(model2, alice, (m, a) -> null));
+
+		cache.invalidateAgent(alice);
+		Assert.assertNull(cache.writeMode(model2, alice, (m, a) -> null));
+		Assert.assertNull(cache.writeMode(model2, bob, (m, a) -> WEBACL.MODE_WRITE));
+	}
+
+	@Test
+	public void testExpiration() {
+		PermissionCache cache = new PermissionCache(100, 0);
+		Assert.assertTrue(cache.isReadable(model1, alice, (m, a) -> true));
+		Assert.assertFalse(cache.isReadable(model1, alice, (m, a) -> false));
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testReadableExpiration() {
+		PermissionCache cache = new PermissionCache(100, 60000);
+		Assert.assertEquals(0, cache.getReadableExpiration(model1, alice));
+		long start = System.currentTimeMillis();
+		cache.isReadable(model1, alice, (m, a) -> false);
+		long expiration = cache.getReadableExpiration(model1, alice);
+		Assert.assertTrue(expiration >= start + 60000);
+		Assert.assertTrue(expiration <= System.currentTimeMillis() + 60000);
+		// only write modes are cached for model2
+		cache.writeMode(model2, alice, (m, a) -> null);
+		Assert.assertEquals(0, cache.getReadableExpiration(model2, alice));
+	}
+
+	@Test
+	public void testMaximumSize() {
+		PermissionCache cache = new PermissionCache(1, 60000);
+		cache.isReadable(model1, alice, (m, a) -> true);
+		cache.isReadable(model2, alice, (m, a) -> true);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+}
@@ -18,6 +18,7 @@ import net.enilink.vocab.acl.Authorization;
 import net.enilink.vocab.acl.ENILINKACL;
 import net.enilink.vocab.acl.WEBACL;
 import net.enilink.vocab.foaf.Agent;
+import net.enilink.vocab.foaf.FOAF;
 import net.enilink.vocab.owl.Class;
 import net.enilink.vocab.owl.OWL;
 import net.enilink.vocab.owl.OwlProperty;
@@ -33,6 +34,7 @@ import org.junit.Test;
 import javax.security.auth.Subject;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletionException;
 
@@ -306,6 +308,60 @@ public class SecureModelSetTest {
 
 	}
 
+	@Test
+	public void testGroupAcls() {
+		final URI group = URIs.createURI("enilink:group:test");
+		IEntityManager metaData = modelSet.getMetaDataManager();
+		IModel model3 = modelSet.createModel(URIs
+				.createURI("http://enilink.net/test/model3"));
+		metaData.add(new Statement(group, RDF.PROPERTY_TYPE, FOAF.TYPE_GROUP));
+		metaData.add(new Statement(group, FOAF.PROPERTY_MEMBER, alice));
+		createAcl(metaData, group, model3.getURI(), WEBACL.MODE_READ);
+
+		ISecureModelSet secureModelSet = (ISecureModelSet) modelSet;
+		GroupMembershipIndex index = secureModelSet.getMembershipIndex();
+		index.load(metaData);
+		Assert.assertTrue(index.isMemberOf(alice, group));
+		Assert.assertFalse(index.isMemberOf(bob, group));
+
+		Assert.assertTrue(secureModelSet.isReadableBy(model3.getURI(), alice));
+		Assert.assertFalse(secureModelSet.isReadableBy(model3.getURI(), bob));
+
+		// the index is updated incrementally
+		metaData.add(new Statement(group, FOAF.PROPERTY_MEMBER, bob));
+		Assert.assertTrue(index.isMemberOf(bob, group));
+		Assert.assertTrue(secureModelSet.isReadableBy(model3.getURI(), bob));
+	}
+
+	@Test
+	public void testVisibleModels() {
+		IEntityManager metaData = modelSet.getMetaDataManager();
+		ISecureModelSet secureModelSet = (ISecureModelSet) modelSet;
+		Assert.assertEquals(Arrays.asList(model1.getURI()),
+				secureModelSet.getVisibleModels(alice, 0, -1));
+		Assert.assertEquals(1, secureModelSet.getVisibleModelsCache().size());
+
+		// changed ACLs of existing models
+		createAcl(metaData, alice, model2.getURI(), WEBACL.MODE_READ);
+		Assert.assertEquals(Arrays.asList(model1.getURI(), model2.getURI()),
+				secureModelSet.getVisibleModels(alice, 0, -1));
+
+		// added model with existing ACL
+		URI model3Uri = URIs.createURI("http://enilink.net/test/model3");
+		createAcl(metaData, alice, model3Uri, WEBACL.MODE_READ);
+		secureModelSet.getVisibleModels(alice, 0, -1);
+		IModel model3 = modelSet.createModel(model3Uri);
+		Assert.assertEquals(Arrays.asList(model1.getURI(), model2.getURI(), model3Uri),
+				secureModelSet.getVisibleModels(alice, 0, -1));
+		Assert.assertEquals(Arrays.asList(model2.getURI()),
+				secureModelSet.getVisibleModels(alice, 1, 1));
+
+		// removed model
+		metaData.remove(new Statement((IReference) modelSet, MODELS.PROPERTY_MODEL, model3));
+		Assert.assertEquals(Arrays.asList(model1.getURI(), model2.getURI()),
+				secureModelSet.getVisibleModels(alice, 0, -1));
+	}
+
 	List<IReference> addList(IEntityManager em, IReference subject,
 	                         IReference property) {
 		List<IReference> items = new ArrayList<>();
@@ -398,6 +454,87 @@ public class SecureModelSetTest {
 				});
 	}
 
+	@Test
+	public void testForeignResourceAcls() {
+		final URI alicesResource = URIs.createURI("resource:alices-resource");
+		final IReference[] node = {null};
+		Subject.callAs(SecurityUtil.SYSTEM_USER_SUBJECT,
+				() -> {
+					IEntityManager em = model1.getManager();
+					// only alice may write alicesResource
+					createAcl(em, alice, alicesResource, WEBACL.MODE_WRITE);
+					node[0] = em.createReference();
+					em.add(new Statement(alicesResource,
+							URIs.createURI("some:prop"), node[0]));
+					return null;
+				});
+
+		Subject.callAs(SecurityUtil.subjectForUser(carl),
+				() -> {
+					IEntityManager em = model1.getManager();
+					// the ACL of alice must not grant access to carl
+					try {
+						em.add(new Statement(alicesResource,
+								RDFS.PROPERTY_LABEL, "Carl's label"));
+						exceptionExpected();
+					} catch (KommaException ignored) {
+					}
+					try {
+						em.add(new Statement(node[0], RDFS.PROPERTY_LABEL,
+								"Carl's label"));
+						exceptionExpected();
+					} catch (KommaException ignored) {
+					}
+					return null;
+				});
+	}
+
+	@Test
+	public void testBatchedChainModes() {
+		final URI carlsType = URIs.createURI("resource:carls-type");
+		final List<IReference> nodes = new ArrayList<>();
+		Subject.callAs(SecurityUtil.SYSTEM_USER_SUBJECT,
+				() -> {
+					IEntityManager em = model1.getManager();
+					// carl may write all resources of carlsType
+					createAclForClass(em, carl, carlsType, WEBACL.MODE_WRITE);
+					for (int i = 0; i < 10; i++) {
+						URI resource = URIs.createURI("resource:r" + i);
+						em.add(new Statement(resource, RDF.PROPERTY_TYPE,
+								carlsType));
+						IReference node = em.createReference();
+						em.add(new Statement(resource,
+								URIs.createURI("some:prop"), node));
+						nodes.add(node);
+					}
+					return null;
+				});
+
+		AclModeCache cache = ((ISecureModelSet) modelSet).getAclModeCache();
+		long queries = cache.getQueryCount();
+		Subject.callAs(SecurityUtil.subjectForUser(carl),
+				() -> {
+					IEntityManager em = model1.getManager();
+					try {
+						em.getTransaction().begin();
+						for (IReference node : nodes) {
+							em.add(new Statement(node, RDFS.PROPERTY_LABEL,
+									"Carl's node"));
+						}
+						em.getTransaction().commit();
+					} finally {
+						if (em.getTransaction().isActive()) {
+							em.getTransaction().rollback();
+						}
+					}
+					Assert.assertTrue(em.hasMatch(nodes.get(9),
+							RDFS.PROPERTY_LABEL, "Carl's node"));
+					return null;
+				});
+		// the resources referencing the blank nodes are resolved at once
+		Assert.assertEquals(1, cache.getQueryCount() - queries);
+	}
+
 	@Test
 	public void testControlAcls() {
 		final URI bobsClass = URIs.createURI("resource:bobs-class");
@@ -0,0 +1,67 @@
+package net.enilink.platform.core.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedCacheTest {
+	@Test
+	public void testEviction() {
+		BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		// mark "a" as recently used
+		Assert.assertEquals(Integer.valueOf(1), cache.lookup("a"));
+		cache.put("c", 3);
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull(cache.lookup("b"));
+		Assert.assertEquals(Integer.valueOf(3), cache.get("c"));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testIndexes() {
+		BoundedCache<String, Integer> cache = new BoundedCache<>(2);
+		BoundedCache.Index<String> byChar = cache.addIndex(key -> Arrays.asList(key.split("")));
+		cache.put("ab", 1);
+		cache.put("bc", 2);
+		Assert.assertEquals(3, byChar.size());
+		cache.put("cd", 3);
+		// evicted keys are removed from the index
+		Assert.assertEquals(3, byChar.size());
+
+		cache.invalidate(byChar, "c");
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, byChar.size());
+	}
+
+	@Test
+	public void testGeneration() {
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10);
+		BoundedCache.Index<String> byKey = cache.addIndex(Collections::singleton);
+		long generation = cache.getGeneration();
+		cache.invalidate(byKey, "a");
+		// value was computed before the invalidation
+		Assert.assertFalse(cache.put("a", 1, generation));
+		Assert.assertNull(cache.get("a"));
+		Assert.assertTrue(cache.put("a", 1, cache.getGeneration()));
+		Assert.assertEquals(Integer.valueOf(1), cache.get("a"));
+	}
+
+	@Test
+	public void testExpiration() {
+		BoundedCache<String, Integer> cache = new BoundedCache<>(10, 0);
+		cache.put("a", 1);
+		Assert.assertNull(cache.get("a"));
+		Assert.assertEquals(0, cache.getExpiration("a"));
+		Assert.assertEquals(0, cache.size());
+
+		cache = new BoundedCache<>(10);
+		cache.put("a", 1);
+		Assert.assertEquals(Long.MAX_VALUE, cache.getExpiration("a"));
+	}
+}
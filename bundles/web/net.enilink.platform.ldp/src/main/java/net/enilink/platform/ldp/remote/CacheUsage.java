@@ -0,0 +1,83 @@
+package net.enilink.platform.ldp.remote;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+
+import java.util.*;
+
+/**
+ * Tracks the number of cached statements and the order of accesses for each
+ * cached LDP resource.
+ */
+class CacheUsage {
+	static class Entry {
+		final Set<Resource> subjects;
+		final int statements;
+
+		Entry(Set<Resource> subjects, int statements) {
+			this.subjects = subjects;
+			this.statements = statements;
+		}
+	}
+
+	// access ordered, the least recently used resource comes first
+	final Map<IRI, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	long statements;
+
+	/**
+	 * Marks the resource as recently used.
+	 */
+	synchronized void accessed(IRI resource) {
+		entries.get(resource);
+	}
+
+	/**
+	 * Returns the recorded usage of the resource and marks it as recently
+	 * used.
+	 */
+	synchronized Entry get(IRI resource) {
+		return entries.get(resource);
+	}
+
+	synchronized boolean contains(IRI resource) {
+		return entries.containsKey(resource);
+	}
+
+	/**
+	 * Records the subjects and the number of statements that have been cached
+	 * for the resource.
+	 */
+	synchronized void updated(IRI resource, Set<Resource> subjects, int count) {
+		Entry old = entries.put(resource, new Entry(subjects, count));
+		statements += count - (old == null ? 0 : old.statements);
+	}
+
+	synchronized Entry removed(IRI resource) {
+		Entry old = entries.remove(resource);
+		if (old != null) {
+			statements -= old.statements;
+		}
+		return old;
+	}
+
+	synchronized long getStatements() {
+		return statements;
+	}
+
+	/**
+	 * Returns the least recently used resources that need to be removed to
+	 * limit the number of statements to the given maximum.
+	 */
+	synchronized List<IRI> selectEvictions(long maxStatements) {
+		List<IRI> evictions = new ArrayList<>();
+		long remaining = statements;
+		Iterator<Map.Entry<IRI, Entry>> it = entries.entrySet().iterator();
+		while (remaining > maxStatements && it.hasNext()) {
+			Map.Entry<IRI, Entry> entry = it.next();
+			evictions.add(entry.getKey());
+			remaining -= entry.getValue().statements;
+		}
+		return evictions;
+	}
+}
@@ -0,0 +1,54 @@
+package net.enilink.platform.ldp.remote;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Prefix trie of endpoint addresses for finding the endpoint of a resource.
+ * <p>
+ * Lookups are lock-free and run in time proportional to the length of the
+ * resource's address, independent of the number of endpoints.
+ */
+class EndpointIndex<E> {
+	static class Node<E> {
+		final Map<Character, Node<E>> children = new ConcurrentHashMap<>();
+		volatile E endpoint;
+	}
+
+	final Node<E> root = new Node<>();
+
+	/**
+	 * Registers an endpoint for all addresses starting with the given prefix.
+	 */
+	synchronized void put(String prefix, E endpoint) {
+		Node<E> node = root;
+		for (int i = 0; i < prefix.length(); i++) {
+			node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node<>());
+		}
+		node.endpoint = endpoint;
+	}
+
+	/**
+	 * Returns the endpoint with the longest prefix of the given address or
+	 * <code>null</code> if no endpoint matches.
+	 */
+	E lookup(String address) {
+		Node<E> node = root;
+		E endpoint = node.endpoint;
+		for (int i = 0; i < address.length(); i++) {
+			node = node.children.get(address.charAt(i));
+			if (node == null) {
+				break;
+			}
+			if (node.endpoint != null) {
+				endpoint = node.endpoint;
+			}
+		}
+		return endpoint;
+	}
+
+	synchronized void clear() {
+		root.children.clear();
+		root.endpoint = null;
+	}
+}
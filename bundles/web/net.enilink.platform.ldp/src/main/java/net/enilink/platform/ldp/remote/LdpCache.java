@@ -1,5 +1,6 @@
 package net.enilink.platform.ldp.remote;
 
+import net.enilink.commons.iterator.IExtendedIterator;
 import net.enilink.commons.iterator.IMap;
 import net.enilink.komma.core.*;
 import net.enilink.komma.em.concepts.IResource;
@@ -8,6 +9,7 @@ import net.enilink.komma.model.IModelSet;
 import net.enilink.komma.rdf4j.RDF4JValueConverter;
 import net.enilink.platform.core.PluginConfigModel;
 import net.enilink.platform.core.security.SecurityUtil;
+import net.enilink.platform.core.util.BoundedCache;
 import net.enilink.vocab.owl.OWL;
 import net.enilink.vocab.rdf.RDF;
 import org.eclipse.rdf4j.common.iteration.Iterations;
@@ -20,15 +22,23 @@ import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.Sail;
 import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.FrameworkUtil;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.security.auth.Subject;
+import java.io.File;
 import java.security.PrivilegedAction;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Component(immediate = false, service = LdpCache.class)
 public class LdpCache {
@@ -48,17 +58,33 @@ public class LdpCache {
 
 	protected final static Logger logger = LoggerFactory.getLogger(LdpCache.class);
 
+	/**
+	 * Maximum number of resources whose endpoint is cached.
+	 */
+	protected final static int LOOKUP_CACHE_SIZE = 10000;
+
+	public final static int DEFAULT_MAX_STATEMENTS = 1000000;
+
 	protected static LdpCache INSTANCE;
 	protected static Set<URI> endpoints;
+	// index of the endpoints for longest-prefix lookups
+	protected static EndpointIndex<IRI> endpointIndex = new EndpointIndex<>();
 
 	protected IModelSet modelSet;
 
 	protected boolean useExtraRepository = true;
+	// "memory" or "native" for a persistent cache
+	protected String storeType = "memory";
+	protected File dataDir;
+	protected URI cacheModelUri = URIs.createURI(CACHE_MODEL_IRI.toString());
 	protected Repository repository;
+	// eviction starts if the cache holds more statements
+	protected long maxStatements = DEFAULT_MAX_STATEMENTS;
+	protected final CacheUsage usage = new CacheUsage();
 	protected RepositoryConnection connection;
 
-	// FIXME: maybe use URIMapRules with a priority?
-	protected Map<IRI, IRI> lookupCache;
+	// maps resources to their endpoints, empty if a resource has none
+	protected BoundedCache<IRI, Optional<IRI>> lookupCache;
 
 	protected IModel endpointModel;
 	protected IModel cacheModel;
@@ -68,9 +94,9 @@ public class LdpCache {
 	}
 
 	public LdpCache() {
-		endpoints = new HashSet<URI>();
-		// FIXME: deploy proper caching strategy
-		lookupCache = new HashMap<IRI, IRI>(10000);
+		endpoints = ConcurrentHashMap.newKeySet();
+		endpointIndex.clear();
+		lookupCache = new BoundedCache<>(LOOKUP_CACHE_SIZE);
 	}
 
 	/**
@@ -79,10 +105,9 @@ public class LdpCache {
 	public void activate() {
 		try {
 			if (useExtraRepository) {
-				// TODO: make this configurable
-				repository = new SailRepository(new MemoryStore());
+				repository = new SailRepository(createStore());
 				repository.init();
-				logger.trace("LdpCache initialized internal MemoryStore repository.");
+				logger.trace("LdpCache initialized internal repository.");
 			}
 		} catch (RepositoryException re) {
 			throw new IllegalStateException("Failed to initialize LdpCache repository: " + re);
@@ -95,13 +120,12 @@ public class LdpCache {
 				// here, but in the internal repository; this is needed for
 				// KOMMA model handling (context triggers the federation's
 				// cache member and thus the internal repository)
-				URI CACHE_MODEL_URI = URIs.createURI(CACHE_MODEL_IRI.toString());
-				cacheModel = modelSet.getModel(CACHE_MODEL_URI, false);
+				cacheModel = modelSet.getModel(cacheModelUri, false);
 				if (null == cacheModel) {
-					cacheModel = modelSet.createModel(CACHE_MODEL_URI);
+					cacheModel = modelSet.createModel(cacheModelUri);
 				}
 				// add the LDP cache as readable graph to the modelset
-				modelSet.getModule().addReadableGraph(CACHE_MODEL_URI);
+				modelSet.getModule().addReadableGraph(cacheModelUri);
 
 				// create a model to hold the configured endpoints
 				Set<URI> newEndpoints = getEndpoints();
@@ -140,6 +164,7 @@ public class LdpCache {
 				} catch (Throwable t) {
 					t.printStackTrace();
 				}
+				restoreUsage();
 
 				return null;
 			} catch (Throwable t) {
@@ -151,11 +176,77 @@ public class LdpCache {
 		logger.trace("LdpCache activated");
 	}
 
+	/**
+	 * Records the usage of resources that have been cached before a restart,
+	 * the least recently fetched resources are evicted first.
+	 * <p>
+	 * Only the statements about the resources themselves are counted since
+	 * their sub-resources are not known until they are fetched again.
+	 */
+	protected void restoreUsage() {
+		try {
+			LdpCacheConnection conn = getConnection();
+			try {
+				Map<IRI, Long> fetched = new HashMap<>();
+				try (Stream<org.eclipse.rdf4j.model.Statement> stmts = conn.statements(null,
+						LdpClient.PROPERTY_FETCHED, null, false, CACHE_MODEL_IRI)) {
+					stmts.forEach(stmt -> {
+						if (stmt.getSubject() instanceof IRI && stmt.getObject() instanceof org.eclipse.rdf4j.model.Literal) {
+							long time = ((org.eclipse.rdf4j.model.Literal) stmt.getObject()).calendarValue()
+									.toGregorianCalendar().getTimeInMillis();
+							fetched.merge((IRI) stmt.getSubject(), time, Math::max);
+						}
+					});
+				}
+				fetched.entrySet().stream().sorted(Map.Entry.comparingByValue()).forEach(entry -> {
+					try (Stream<org.eclipse.rdf4j.model.Statement> stmts = conn.statements(entry.getKey(), null, null,
+							false, CACHE_MODEL_IRI)) {
+						usage.updated(entry.getKey(), Collections.singleton(entry.getKey()), (int) stmts.count());
+					}
+				});
+				logger.debug("restored usage of {} cached resources", fetched.size());
+			} finally {
+				conn.close();
+			}
+		} catch (RepositoryException | IllegalArgumentException e) {
+			logger.warn("could not restore usage of cached resources", e);
+		}
+		LdpClient.evictIfRequired(this);
+	}
+
+	/**
+	 * Creates the store for the internal repository according to the
+	 * configured store type.
+	 */
+	protected Sail createStore() {
+		if ("native".equalsIgnoreCase(storeType)) {
+			File dir = dataDir;
+			if (null == dir) {
+				// use the persistent storage area of this bundle
+				Bundle bundle = FrameworkUtil.getBundle(LdpCache.class);
+				dir = null == bundle ? null : bundle.getDataFile("cache");
+			}
+			if (null != dir) {
+				logger.info("using persistent LDP cache in {}", dir);
+				return new NativeStore(dir, "spoc,posc");
+			}
+			logger.warn("no data directory for persistent LDP cache, using memory store instead");
+		}
+		return new MemoryStore();
+	}
+
 	/**
 	 * Called from OSGi-DS upon component de-activation.
 	 */
 	protected void deactivate() {
 		INSTANCE = null;
+		LdpClient.shutdown();
+		LdpPrefetcher.shutdown();
+		if (null != repository) {
+			// required to persist the state of native stores
+			repository.shutDown();
+			repository = null;
+		}
 		logger.trace("LdpCache deactivated");
 	}
 
@@ -180,27 +271,68 @@ public class LdpCache {
 		configModel.begin();
 		try {
 			IResource cacheCfg = configModel.getManager().find(PLUGIN_CONFIG_URI.appendLocalPart("cache"), IResource.class);
-			Object modelCfgSetting = cacheCfg.getSingle(PLUGIN_CONFIG_URI.appendLocalPart("model"));
-			if (null != modelCfgSetting) {
-				URI cacheModel = URIs.createURI(modelCfgSetting.toString());
-				logger.info("using cacheModel=" + cacheModel);
-				// TODO: actually set up internal cache model using that
-				// configuration
-			}
 			Object extraRepositorySetting = cacheCfg.getSingle(PLUGIN_CONFIG_URI.appendLocalPart("extraRepository"));
 			if (null != extraRepositorySetting) {
 				useExtraRepository = Boolean.parseBoolean(extraRepositorySetting.toString());
 			}
+			Object modelCfgSetting = cacheCfg.getSingle(PLUGIN_CONFIG_URI.appendLocalPart("model"));
+			if (null != modelCfgSetting) {
+				if (useExtraRepository) {
+					// the federation relies on the fixed context of the internal repository
+					logger.warn("ignoring cacheModel={} since an extra repository is used", modelCfgSetting);
+				} else {
+					cacheModelUri = URIs.createURI(modelCfgSetting.toString());
+					logger.info("using cacheModel=" + cacheModelUri);
+				}
+			}
+			Object storeSetting = cacheCfg.getSingle(PLUGIN_CONFIG_URI.appendLocalPart("store"));
+			if (null != storeSetting) {
+				storeType = storeSetting.toString().trim();
+			}
+			maxStatements = getIntSetting(cacheCfg, "maxStatements", DEFAULT_MAX_STATEMENTS);
+			Object dataDirSetting = cacheCfg.getSingle(PLUGIN_CONFIG_URI.appendLocalPart("dataDir"));
+			if (null != dataDirSetting) {
+				dataDir = new File(dataDirSetting.toString().trim());
+			}
+
+			IResource clientCfg = configModel.getManager().find(PLUGIN_CONFIG_URI.appendLocalPart("client"), IResource.class);
+			LdpClient.configure( //
+					getIntSetting(clientCfg, "maxConnections", LdpClient.DEFAULT_MAX_CONNECTIONS), //
+					getIntSetting(clientCfg, "maxConnectionsPerRoute", LdpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE), //
+					getIntSetting(clientCfg, "connectTimeout", LdpClient.DEFAULT_CONNECT_TIMEOUT), //
+					getIntSetting(clientCfg, "readTimeout", LdpClient.DEFAULT_READ_TIMEOUT), //
+					getIntSetting(clientCfg, "defaultTtl", (int) LdpClient.DEFAULT_TTL));
+			LdpPrefetcher.configure( //
+					getIntSetting(clientCfg, "prefetchThreads", LdpPrefetcher.DEFAULT_THREADS), //
+					getIntSetting(clientCfg, "prefetchTimeout", (int) LdpPrefetcher.DEFAULT_TIMEOUT));
 		} finally {
 			configModel.end();
 		}
 	}
 
+	protected int getIntSetting(IResource cfg, String name, int defaultValue) {
+		Object setting = cfg.getSingle(PLUGIN_CONFIG_URI.appendLocalPart(name));
+		if (null != setting) {
+			try {
+				return Integer.parseInt(setting.toString().trim());
+			} catch (NumberFormatException nfe) {
+				logger.warn("invalid value for setting {}: {}", name, setting);
+			}
+		}
+		return defaultValue;
+	}
+
 	// FIXME: invocation order, called from FederationModelSetSupport
 	public static void addEndpoint(IReference endpoint) {
 		// when the modelset becomes available, the endpoints will be
 		// registered with the endpoint model
 		endpoints.add(endpoint.getURI());
+		endpointIndex.put(endpoint.getURI().toString(), vf.createIRI(endpoint.getURI().toString()));
+		// cached lookups may have been overridden by the new endpoint
+		LdpCache instance = INSTANCE;
+		if (instance != null) {
+			instance.lookupCache.clear();
+		}
 		logger.info("added LDP EP: {}", endpoint);
 	}
 
@@ -213,23 +345,32 @@ public class LdpCache {
 			return null;
 		}
 		IRI iri = (IRI) resource;
-		if (lookupCache.containsKey(resource)) {
-			return lookupCache.get(resource);
-		}
-		IRI endpoint = null;
-		// FIXME: can multiple endpoints be nested in sub-paths?
-		// URIMapRules w/ priority could be used to resolve such cases properly
-		for (URI ep : endpoints) {
-			if (resource.toString().startsWith(ep.toString())) {
-				endpoint = vf.createIRI(ep.toString());
-			}
+		Optional<IRI> cached = lookupCache.get(iri);
+		if (cached != null) {
+			return cached.orElse(null);
 		}
-		lookupCache.put(iri, endpoint);
+		// an endpoint that is added concurrently clears the cache after
+		// updating the index, the result is then discarded as it may be stale
+		long generation = lookupCache.getGeneration();
+		// nested endpoints are resolved to the one with the longest address
+		IRI endpoint = endpointIndex.lookup(iri.toString());
+		lookupCache.put(iri, Optional.ofNullable(endpoint), generation);
 
 		logger.trace("LDP EP for resource '{}': {}", resource, endpoint);
 		return endpoint;
 	}
 
+	/**
+	 * Returns the maximum number of cached statements.
+	 */
+	public long getMaxStatements() {
+		return maxStatements;
+	}
+
+	CacheUsage getUsage() {
+		return usage;
+	}
+
 	public LdpCacheConnection getConnection() {
 		return new LdpCacheConnection();
 	}
@@ -305,20 +446,26 @@ public class LdpCache {
 			}
 		}
 
-		public List<org.eclipse.rdf4j.model.Statement> getStatements(Resource subject, IRI predicate, Value object,
-		                                                             boolean includeInferred, Resource... ctxs) {
-			logger.trace("getStatements({}, {}, {}, {}, {})", subject, predicate, object, includeInferred, ctxs);
+		/**
+		 * Returns the matching statements as a lazy stream that must be
+		 * closed after use.
+		 */
+		public Stream<org.eclipse.rdf4j.model.Statement> statements(Resource subject, IRI predicate, Value object,
+		                                                            boolean includeInferred, Resource... ctxs) {
+			logger.trace("statements({}, {}, {}, {}, {})", subject, predicate, object, includeInferred, ctxs);
 			if (useExtraRepository) {
-				return Iterations.asList(conn.getStatements(subject, predicate, object, includeInferred, ctxs));
+				return Iterations.stream(conn.getStatements(subject, predicate, object, includeInferred, ctxs));
 			} else {
-				return cacheModel.getManager()
+				IExtendedIterator<org.eclipse.rdf4j.model.Statement> stmts = cacheModel.getManager()
 						.match(vc.fromRdf4j(subject), vc.fromRdf4j(predicate), vc.fromRdf4j(object))
 						.mapWith(new IMap<IStatement, org.eclipse.rdf4j.model.Statement>() {
 							@Override
 							public org.eclipse.rdf4j.model.Statement map(IStatement stmt) {
 								return vc.toRdf4j(stmt);
 							}
-						}).toList();
+						});
+				return StreamSupport.stream(Spliterators.spliteratorUnknownSize(stmts, Spliterator.ORDERED), false)
+						.onClose(stmts::close);
 			}
 		}
 
@@ -335,15 +482,33 @@ public class LdpCache {
 			return true;
 		}
 
+		/**
+		 * Adds multiple statements with a single call to the underlying
+		 * store.
+		 */
+		public void addAll(Collection<? extends org.eclipse.rdf4j.model.Statement> statements, IRI ctx) {
+			logger.trace("addAll({} statements, {})", statements.size(), ctx);
+			if (useExtraRepository) {
+				conn.add(statements, ctx);
+			} else {
+				List<IStatement> stmts = new ArrayList<>(statements.size());
+				for (org.eclipse.rdf4j.model.Statement statement : statements) {
+					stmts.add(new Statement( //
+							vc.fromRdf4j(statement.getSubject()), vc.fromRdf4j(statement.getPredicate()),
+							vc.fromRdf4j(statement.getObject())));
+				}
+				cacheModel.getManager().add(stmts);
+			}
+		}
+
 		public boolean remove(Resource subject, IRI predicate, Value object, Resource... ctxs) {
 			logger.trace("remove({}, {}, {}, {})", subject, predicate, object, ctxs);
 			if (useExtraRepository) {
 				conn.remove(subject, predicate, object, ctxs);
 			} else {
-				for (Resource ctx : ctxs) {
-					cacheModel.getManager().remove(new StatementPattern( //
-							vc.fromRdf4j(subject), vc.fromRdf4j(predicate), vc.fromRdf4j(object), vc.fromRdf4j(ctx)));
-				}
+				// the manager is restricted to the cache model
+				cacheModel.getManager().remove(new StatementPattern( //
+						vc.fromRdf4j(subject), vc.fromRdf4j(predicate), vc.fromRdf4j(object), null));
 			}
 			return true;
 		}
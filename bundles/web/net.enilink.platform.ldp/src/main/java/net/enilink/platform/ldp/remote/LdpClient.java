@@ -1,15 +1,22 @@
 package net.enilink.platform.ldp.remote;
 
+import net.enilink.platform.core.util.BoundedCache;
 import net.enilink.platform.ldp.remote.LdpCache.LdpCacheConnection;
 import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpHead;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHeader;
 import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.ValueFactory;
@@ -23,11 +30,22 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 /**
  * Simple LDP client on top of commons HttpClient.
  * <p>
  * Only supports GETting resources right now, no updates.
+ * <p>
+ * Cached resources are considered fresh for the duration given by the
+ * <code>Cache-Control: max-age</code> of the last response or, if absent, for
+ * a default TTL. Afterwards they are revalidated with a conditional GET.
+ * <p>
+ * All requests share a pooled HTTP client that keeps connections alive and
+ * accepts compressed responses. It is configured with {@link #configure}.
  */
 public class LdpClient {
 
@@ -35,29 +53,169 @@ public class LdpClient {
 
 	public final static IRI PROPERTY_ETAG = vf.createIRI(LdpCache.CACHE_MODEL_IRI.stringValue() + "#ETag");
 
+	public final static IRI PROPERTY_FETCHED = vf.createIRI(LdpCache.CACHE_MODEL_IRI.stringValue() + "#fetched");
+
+	public final static IRI PROPERTY_EXPIRES = vf.createIRI(LdpCache.CACHE_MODEL_IRI.stringValue() + "#expires");
+
 	protected final static Logger logger = LoggerFactory.getLogger(LdpClient.class);
 
-	// FIXME: deploy proper caching strategy
-	protected final static Map<IRI, String> eTagCache = new HashMap<IRI, String>(10000);
-	protected final static Map<IRI, Long> floodBlock = new HashMap<IRI, Long>(10000);
+	/**
+	 * Maximum number of resources whose ETag and freshness are kept in
+	 * memory, evicted entries are reloaded from the cache repository.
+	 */
+	protected final static int MAX_TRACKED_RESOURCES = 10000;
+
+	// the ETags of cached resources, empty if a resource has none
+	protected final static BoundedCache<IRI, Optional<String>> eTagCache = new BoundedCache<>(MAX_TRACKED_RESOURCES);
+	// evictions hold the write lock to remove statements and ETags atomically
+	protected final static ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+
+	// time in milliseconds until which the cached representation is fresh
+	protected final static BoundedCache<IRI, Long> freshUntil = new BoundedCache<>(MAX_TRACKED_RESOURCES);
+
+	public final static int DEFAULT_MAX_CONNECTIONS = 50;
+	public final static int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+	public final static int DEFAULT_CONNECT_TIMEOUT = 10000;
+	public final static int DEFAULT_READ_TIMEOUT = 30000;
+	public final static long DEFAULT_TTL = 10000;
+
+	/**
+	 * Number of statements that are parsed before they are added to the
+	 * cache.
+	 */
+	protected final static int CHUNK_SIZE = 1000;
+
+	protected final static int NOT_MODIFIED = -1;
+
+	/**
+	 * Adds parsed statements of a resource and its sub-resources to the cache
+	 * and replaces their previous statements.
+	 */
+	protected static class CacheWriter extends AbstractRDFHandler {
+		final LdpCacheConnection conn;
+		final IRI uri;
+		final Set<Resource> removedSubjects;
+		final Set<Resource> subjects = new HashSet<>();
+		final List<Statement> buffer = new ArrayList<>(CHUNK_SIZE);
+		int count;
+
+		CacheWriter(LdpCacheConnection conn, IRI uri, Set<Resource> replacedSubjects) {
+			this.conn = conn;
+			this.uri = uri;
+			this.removedSubjects = new HashSet<>(replacedSubjects);
+			for (Resource subject : replacedSubjects) {
+				conn.remove(subject, null, null, LdpCache.CACHE_MODEL_IRI);
+			}
+		}
+
+		@Override
+		public void handleStatement(Statement stmt) throws RDFHandlerException {
+			// accepts sub-resources (containers...) to the
+			// requested one (use-case: sub-containers)
+			// TODO: check LDP container interaction model
+			Resource subject = stmt.getSubject();
+			if (null == subject || !subject.stringValue().startsWith(uri.stringValue())) {
+				return;
+			}
+			if (removedSubjects.add(subject)) {
+				// replace statements of a sub-resource that was cached separately
+				conn.remove(subject, null, null, LdpCache.CACHE_MODEL_IRI);
+			}
+			subjects.add(subject);
+			buffer.add(stmt);
+			count++;
+			if (buffer.size() >= CHUNK_SIZE) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (!buffer.isEmpty()) {
+				// maybe include the endpoint as context as well?
+				conn.addAll(buffer, LdpCache.CACHE_MODEL_IRI);
+				buffer.clear();
+			}
+		}
+
+		@Override
+		public void endRDF() throws RDFHandlerException {
+			flush();
+		}
+	}
+
+	protected static int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	protected static int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+	protected static int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	protected static int readTimeout = DEFAULT_READ_TIMEOUT;
+	protected static long defaultTtl = DEFAULT_TTL;
+
+	protected static CloseableHttpClient httpClient;
+
+	/**
+	 * Configures the shared HTTP client, replaces an existing client.
+	 *
+	 * @param maxConnections         The maximum number of pooled connections.
+	 * @param maxConnectionsPerRoute The maximum number of pooled connections
+	 *                               per host.
+	 * @param connectTimeout         The connect timeout in milliseconds.
+	 * @param readTimeout            The socket read timeout in milliseconds.
+	 * @param defaultTtl             The time in milliseconds that resources are
+	 *                               considered fresh if the server does not
+	 *                               specify a max-age.
+	 */
+	public static synchronized void configure(int maxConnections, int maxConnectionsPerRoute, int connectTimeout,
+	                                          int readTimeout, long defaultTtl) {
+		LdpClient.maxConnections = maxConnections;
+		LdpClient.maxConnectionsPerRoute = maxConnectionsPerRoute;
+		LdpClient.connectTimeout = connectTimeout;
+		LdpClient.readTimeout = readTimeout;
+		LdpClient.defaultTtl = defaultTtl;
+		shutdown();
+	}
+
+	/**
+	 * Closes the shared HTTP client and all pooled connections.
+	 */
+	public static synchronized void shutdown() {
+		if (httpClient != null) {
+			try {
+				httpClient.close();
+			} catch (IOException ignored) {
+			}
+			httpClient = null;
+		}
+	}
+
+	/**
+	 * Returns the shared HTTP client, creates it if required.
+	 */
+	protected static synchronized CloseableHttpClient getHttpClient() {
+		if (httpClient == null) {
+			httpClient = createHttpClient();
+		}
+		return httpClient;
+	}
 
 	/**
-	 * Checks if the given resource representation is up-to-date.
+	 * Checks if the given resource representation needs to be revalidated.
 	 * <p>
-	 * It currently does so by issuing a HEAD request for it and comparing the
-	 * response ETag with the cached one.
+	 * This is the case if it doesn't exist in the cache yet or its freshness
+	 * window has expired. No request is issued by this method.
 	 *
 	 * @param resource The resource to check.
-	 * @return True if the resource needs to be updated (doesn't exist in the
-	 * cache yet or is out-of-date), false if it is up-to-date.
+	 * @return True if the resource needs to be revalidated, false if it is
+	 * still fresh or no LDP resource.
 	 */
 	public static boolean needsUpdate(Resource resource) throws Exception {
 		return needsUpdate(resource, LdpCache.getInstance().getEndpoint(resource));
 	}
 
 	/**
-	 * Checks if the given resource representation is up-to-date by issuing a
-	 * HEAD request for it and comparing the response ETag with the cached one.
+	 * Checks if the given resource representation needs to be revalidated.
+	 * <p>
+	 * A positive result reserves the revalidation for the calling thread, i.e.
+	 * subsequent calls return false until the default TTL elapses or the
+	 * revalidation is finished.
 	 *
 	 * @param endpoint The endpoint (short-circuit when already determined).
 	 * @see #needsUpdate(Resource)
@@ -75,38 +233,25 @@ public class LdpClient {
 		}
 		// for performance reasons, the validity of the endpoint is not checked
 
-		// guard against request floods
+		// also guards against request floods while a revalidation is running
 		// FIXME: find a better way, especially with delaying subsequent
 		// requests instead of letting them read old data
 		long now = System.currentTimeMillis();
-		if (floodBlock.containsKey(uri) && (now - floodBlock.get(uri)) < 10000) {
-			logger.trace("flood prevention for '{}' now={} then={} from thread={}", uri, now, floodBlock.get(uri),
-					Thread.currentThread());
-			return false;
-		}
-		floodBlock.put(uri, now);
-
-		CloseableHttpClient httpClient = createHttpClient();
-		HttpHead headRequest = new HttpHead(uri.toString());
-		try {
-			CloseableHttpResponse headResponse = httpClient.execute(headRequest);
-			logger.info("HEAD response status={} content-type={}", headResponse.getStatusLine().getStatusCode(),
-					headResponse.getLastHeader("Content-Type"));
-			Header eTagHeader = headResponse.getLastHeader("ETag");
-			headResponse.close();
-			String newETag = eTagHeader != null ? eTagHeader.getValue() : "-UNSET-";
-			String cachedETag = getETag(uri);
-			logger.info("ETag header value: {} vs. cached ETag: {}", newETag, cachedETag);
-			return !newETag.equals(cachedETag);
-		} catch (Throwable t) {
-			throw t;
-			// FIXME: avoid continuous retries with unreliable connections
-			// maybe use some exponential-back-off strategy
-		} finally {
-			try {
-				httpClient.close();
-			} catch (IOException ignored) {
+		// the cache may have been persisted before a restart or the entry
+		// has been evicted from memory
+		Long persistedExpires = null == freshUntil.get(uri) ? getExpires(uri) : null;
+		synchronized (freshUntil) {
+			Long until = freshUntil.get(uri);
+			if (null == until) {
+				until = persistedExpires;
 			}
+			if (until != null && now < until) {
+				freshUntil.put(uri, until);
+				logger.trace("'{}' is fresh, now={} from thread={}", uri, now, Thread.currentThread());
+				return false;
+			}
+			freshUntil.put(uri, now + defaultTtl);
+			return true;
 		}
 	}
 
@@ -134,54 +279,122 @@ public class LdpClient {
 			return false;
 		}
 		IRI uri = (IRI) resource;
+		LdpCache cache = LdpCache.getInstance();
+		if (null != endpoint) {
+			cache.getUsage().accessed(uri);
+		}
 
 		if (!needsUpdate(resource, endpoint)) {
 			return false;
 		}
 
-		List<Statement> remoteStmts = acquireRemoteStatements(uri);
-		if (!remoteStmts.isEmpty()) {
-			logger.trace("getting LdpCache connection...");
-			LdpCacheConnection conn = LdpCache.getInstance().getConnection();
-			try {
-				// start by removing the existing statements w/ subject uri
-				// do this in a separate transaction
-				// FIXME: since statements with subjects other then the
-				// request uri are accepted below, deal with deleting them
-				boolean wasActive = conn.isActive();
-				if (!wasActive) conn.begin();
-				try {
-					// maybe include the endpoint as context as well?
-					// (see below)
-					// FIXME: delete sub-resources? (see above)
-					conn.remove(uri, null, null, LdpCache.CACHE_MODEL_IRI);
-					if (!wasActive && conn.isActive()) conn.commit();
-				} finally {
-					if (!wasActive && conn.isActive())
-						conn.rollback();
+		String eTag = getETag(uri);
+		int cached = fetch(cache, uri, eTag);
+		if (NOT_MODIFIED == cached) {
+			if (Objects.equals(eTag, getETag(uri))) {
+				if (!cache.getUsage().contains(uri)) {
+					// e.g. loaded from a persistent cache
+					recordUsage(cache, uri);
 				}
+				return false;
+			}
+			// evicted while revalidating
+			cached = fetch(cache, uri, null);
+		}
+		return cached > 0;
+	}
 
-				// now add all statements from the LDP endpoint
-				// do this in a separate transaction as well
-				wasActive = conn.isActive();
-				if (!wasActive) conn.begin();
+	/**
+	 * Streams the resource representation from the LDP server into the cache.
+	 * <p>
+	 * The response is parsed and added to the cache in chunks of
+	 * {@link #CHUNK_SIZE} statements. The previously cached statements are
+	 * replaced within the same transaction, hence readers never see a
+	 * partially updated resource.
+	 * <p>
+	 * Chunking avoids to collect the parsed response in a list, it does not
+	 * bound the memory of a fetch: the open transaction keeps all uncommitted
+	 * changes until the commit, hence the required memory still grows with
+	 * the size of the representation.
+	 *
+	 * @param uri  The uri to request as LDP resource.
+	 * @param eTag The ETag of the cached representation or null.
+	 * @return The number of cached statements or {@link #NOT_MODIFIED} if the
+	 * cached representation is still valid.
+	 */
+	protected static int fetch(LdpCache cache, IRI uri, String eTag) {
+		HttpGet getRequest = new HttpGet(uri.toString());
+		if (null != eTag && !"-UNSET-".equals(eTag)) {
+			getRequest.setHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+		}
+		// the response is always closed to return the connection to the pool
+		try (CloseableHttpResponse getResponse = getHttpClient().execute(getRequest)) {
+			long now = System.currentTimeMillis();
+			long expires = now + getMaxAge(getResponse);
+			if (getResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+				logger.trace("GET '{}' not modified, ETag: {}", uri, eTag);
+				freshUntil.put(uri, expires);
+				storeValidity(uri, now, expires);
+				return NOT_MODIFIED;
+			}
+			Header contentType = getResponse.getLastHeader(HttpHeaders.CONTENT_TYPE);
+			String responseMimeType = contentType != null ? contentType.getValue() : null;
+			logger.info("GET '{}' response status={} content-type={}", uri, getResponse.getStatusLine().getStatusCode(),
+					responseMimeType);
+			Optional<RDFFormat> responseFormat = responseMimeType != null
+					? Rio.getParserFormatForMIMEType(responseMimeType) : Optional.empty();
+			if (!responseFormat.isPresent()) {
+				logger.warn("GET '{}' returned status={} with missing or unsupported content-type={}", uri,
+						getResponse.getStatusLine().getStatusCode(), responseMimeType);
+				return 0;
+			}
+
+			// also remove sub-resources of the previous fetch that no longer exist
+			Set<Resource> previousSubjects = new HashSet<>();
+			previousSubjects.add(uri);
+			CacheUsage.Entry previous = cache.getUsage().get(uri);
+			if (null != previous) {
+				previousSubjects.addAll(previous.subjects);
+			}
+
+			CacheWriter writer;
+			LdpCacheConnection conn = cache.getConnection();
+			try {
+				conn.begin();
 				try {
-					for (Statement remoteStmt : remoteStmts) {
-						// accepts sub-resources (containers...) to the
-						// requested one (use-case: sub-containers)
-						// TODO: check LDP container interaction model
-						if (null != remoteStmt.getSubject()
-								&& remoteStmt.getSubject().stringValue().startsWith(uri.stringValue())) {
-							// maybe include the endpoint as context as
-							// well? (see above)
-							conn.add(remoteStmt, LdpCache.CACHE_MODEL_IRI);
-						}
+					writer = new CacheWriter(conn, uri, previousSubjects);
+					RDFParser parser = Rio.createParser(responseFormat.get(), vf);
+					parser.setRDFHandler(writer);
+					try (InputStream resultStream = getResponse.getEntity().getContent()) {
+						parser.parse(resultStream, uri.toString());
+					}
+					if (writer.count == 0) {
+						// keep the cached statements, rolled back below
+						return 0;
 					}
-					if (!wasActive && conn.isActive()) {
+
+					Header eTagHeader = getResponse.getLastHeader("ETag");
+					String newETag = eTagHeader != null ? eTagHeader.getValue() : "-UNSET-";
+					logger.trace("GET '{}' ETag header value: {}", uri, newETag);
+					writer.handleStatement(vf.createStatement(uri, PROPERTY_ETAG, vf.createLiteral(newETag)));
+					writer.handleStatement(vf.createStatement(uri, PROPERTY_FETCHED, vf.createLiteral(new Date(now))));
+					writer.handleStatement(vf.createStatement(uri, PROPERTY_EXPIRES, vf.createLiteral(new Date(expires))));
+					writer.flush();
+					// an eviction must not interleave with the commit and the
+					// bookkeeping, else it may remove the ETag or the usage of
+					// the new representation but keep its statements
+					Lock lock = cacheLock.readLock();
+					lock.lock();
+					try {
 						conn.commit();
+						eTagCache.put(uri, Optional.of(newETag));
+						freshUntil.put(uri, expires);
+						cache.getUsage().updated(uri, writer.subjects, writer.count);
+					} finally {
+						lock.unlock();
 					}
 				} finally {
-					if (!wasActive && conn.isActive()) {
+					if (conn.isActive()) {
 						conn.rollback();
 					}
 				}
@@ -189,10 +402,13 @@ public class LdpClient {
 				conn.close();
 			}
 
-			logger.trace("added {} statements for '{}'", remoteStmts.size(), uri);
-			return true;
+			logger.trace("added {} statements for '{}'", writer.count, uri);
+			evictIfRequired(cache);
+			return writer.count;
+		} catch (Exception e) {
+			logger.error("could not fetch '{}'", uri, e);
+			return 0;
 		}
-		return false;
 	}
 
 	/**
@@ -203,24 +419,35 @@ public class LdpClient {
 	 * @throws RepositoryException
 	 */
 	protected static String getETag(IRI uri) {
-		if (eTagCache.containsKey(uri)) {
-			return eTagCache.get(uri);
+		Lock lock = cacheLock.readLock();
+		lock.lock();
+		try {
+			Optional<String> eTag = eTagCache.get(uri);
+			if (null != eTag) {
+				return eTag.orElse(null);
+			}
+			return loadETag(uri);
+		} finally {
+			lock.unlock();
 		}
+	}
 
+	/**
+	 * Reads the ETag for the given IRI from the cache repository and
+	 * remembers it.
+	 */
+	protected static String loadETag(IRI uri) {
 		try {
 			LdpCacheConnection conn = LdpCache.getInstance().getConnection();
 			try {
-				String eTag = null;
-				List<Statement> stmts = conn.getStatements(uri, PROPERTY_ETAG, null, false,
-						LdpCache.CACHE_MODEL_IRI);
-				//while (stmts.hasNext()) {
-				for (Statement stmt : stmts) {
-					//Statement stmt = stmts.next();
-					eTag = stmt.getObject().stringValue();
+				String eTag;
+				try (Stream<Statement> stmts = conn.statements(uri, PROPERTY_ETAG, null, false,
+						LdpCache.CACHE_MODEL_IRI)) {
+					eTag = stmts.reduce((first, second) -> second).map(stmt -> stmt.getObject().stringValue())
+							.orElse(null);
 				}
-				//stmts.close();
 				logger.trace("got ETag {} for '{}'", eTag, uri);
-				eTagCache.put(uri, eTag);
+				eTagCache.put(uri, Optional.ofNullable(eTag));
 				return eTag;
 			} finally {
 				conn.close();
@@ -231,65 +458,175 @@ public class LdpClient {
 	}
 
 	/**
-	 * Get the resource representation from the LDP server.
-	 *
-	 * @param uri The uri to request as LDP resource.
-	 * @return The list of statements from the LDP server for the requested LDP
-	 * resource.
+	 * Counts the cached statements of a resource that is not tracked yet.
 	 */
-	// TODO: check LDP requirements wrt. server response etc.
-	public static List<Statement> acquireRemoteStatements(final IRI uri) {
-		final List<Statement> stmts = new ArrayList<Statement>();
-
-		CloseableHttpClient httpClient = createHttpClient();
-		HttpGet getRequest = new HttpGet(uri.toString());
+	protected static void recordUsage(LdpCache cache, IRI uri) {
 		try {
-			CloseableHttpResponse getResponse = httpClient.execute(getRequest);
-			String responseMimeType = getResponse.getLastHeader("Content-Type").getValue();
-			logger.info("GET '{}' response status={} content-type={}", uri, getResponse.getStatusLine().getStatusCode(),
-					responseMimeType);
-			InputStream resultStream = getResponse.getEntity().getContent();
+			LdpCacheConnection conn = cache.getConnection();
 			try {
-				Optional<RDFFormat> responseFormat = Rio.getParserFormatForMIMEType(responseMimeType);
-				if (!responseFormat.isPresent()) {
-					throw new UnsupportedRDFormatException("Unsupported response MIME type: " + responseMimeType);
+				try (Stream<Statement> stmts = conn.statements(uri, null, null, false, LdpCache.CACHE_MODEL_IRI)) {
+					cache.getUsage().updated(uri, Collections.singleton(uri), (int) stmts.count());
 				}
-				RDFParser parser = Rio.createParser(responseFormat.get(), vf);
-				parser.setRDFHandler(new AbstractRDFHandler() {
-					@Override
-					public void handleStatement(Statement stmt) throws RDFHandlerException {
-						stmts.add(stmt);
-					}
-				});
-				parser.parse(resultStream, uri.toString());
 			} finally {
-				resultStream.close();
-				getResponse.close();
+				conn.close();
 			}
+		} catch (RepositoryException re) {
+			logger.warn("could not count statements of '{}'", uri, re);
+		}
+		evictIfRequired(cache);
+	}
+
+	/**
+	 * Evicts the least recently used resources if the cache contains more
+	 * statements than permitted.
+	 */
+	protected static void evictIfRequired(LdpCache cache) {
+		List<IRI> evictions = cache.getUsage().selectEvictions(cache.getMaxStatements());
+		if (!evictions.isEmpty()) {
+			evict(cache, evictions);
+		}
+	}
 
-			if (!stmts.isEmpty()) {
-				Header eTagHeader = getResponse.getLastHeader("ETag");
-				String eTag = eTagHeader != null ? eTagHeader.getValue() : "-UNSET-";
-				logger.trace("GET '{}' ETag header value: {}", uri, eTag);
-				eTagCache.put(uri, eTag);
-				stmts.add(vf.createStatement(uri, PROPERTY_ETAG, vf.createLiteral(eTag)));
+	/**
+	 * Removes the statements and ETags of the given resources from the cache.
+	 */
+	protected static void evict(LdpCache cache, Collection<IRI> uris) {
+		Lock lock = cacheLock.writeLock();
+		lock.lock();
+		try {
+			LdpCacheConnection conn = cache.getConnection();
+			try {
+				conn.begin();
+				try {
+					for (IRI uri : uris) {
+						CacheUsage.Entry entry = cache.getUsage().removed(uri);
+						for (Resource subject : entry == null ? Collections.singleton(uri) : entry.subjects) {
+							conn.remove(subject, null, null, LdpCache.CACHE_MODEL_IRI);
+						}
+					}
+					conn.commit();
+				} finally {
+					if (conn.isActive()) {
+						conn.rollback();
+					}
+				}
+			} finally {
+				conn.close();
 			}
-		} catch (Throwable t) {
-			t.printStackTrace();
+			for (IRI uri : uris) {
+				eTagCache.remove(uri);
+				freshUntil.remove(uri);
+			}
+			logger.debug("evicted {} resources from LDP cache", uris.size());
+		} catch (RepositoryException re) {
+			logger.error("could not evict resources from LDP cache", re);
 		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the persisted end of the freshness window for the given IRI, or
+	 * null.
+	 */
+	protected static Long getExpires(IRI uri) {
+		LdpCache cache = LdpCache.getInstance();
+		if (null == cache) {
+			return null;
+		}
+		try {
+			LdpCacheConnection conn = cache.getConnection();
 			try {
-				httpClient.close();
-			} catch (IOException ignored) {
+				try (Stream<Statement> stmts = conn.statements(uri, PROPERTY_EXPIRES, null, false,
+						LdpCache.CACHE_MODEL_IRI)) {
+					return stmts.map(Statement::getObject).filter(Literal.class::isInstance)
+							.map(value -> ((Literal) value).calendarValue().toGregorianCalendar().getTimeInMillis())
+							.reduce((first, second) -> second).orElse(null);
+				}
+			} finally {
+				conn.close();
+			}
+		} catch (RepositoryException | IllegalArgumentException ignored) {
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces the persisted fetch time and freshness window of a cached
+	 * resource after a successful revalidation.
+	 */
+	protected static void storeValidity(IRI uri, long fetched, long expires) {
+		try {
+			LdpCacheConnection conn = LdpCache.getInstance().getConnection();
+			try {
+				conn.begin();
+				try {
+					conn.remove(uri, PROPERTY_FETCHED, null, LdpCache.CACHE_MODEL_IRI);
+					conn.remove(uri, PROPERTY_EXPIRES, null, LdpCache.CACHE_MODEL_IRI);
+					conn.add(vf.createStatement(uri, PROPERTY_FETCHED, vf.createLiteral(new Date(fetched))),
+							LdpCache.CACHE_MODEL_IRI);
+					conn.add(vf.createStatement(uri, PROPERTY_EXPIRES, vf.createLiteral(new Date(expires))),
+							LdpCache.CACHE_MODEL_IRI);
+					conn.commit();
+				} finally {
+					if (conn.isActive()) {
+						conn.rollback();
+					}
+				}
+			} finally {
+				conn.close();
+			}
+		} catch (RepositoryException re) {
+			logger.warn("could not store validity of '{}'", uri, re);
+		}
+	}
+
+	/**
+	 * Returns the time in milliseconds that a response is fresh according to
+	 * its <code>Cache-Control</code> header or the default TTL.
+	 */
+	protected static long getMaxAge(HttpResponse response) {
+		for (Header header : response.getHeaders(HttpHeaders.CACHE_CONTROL)) {
+			for (HeaderElement element : header.getElements()) {
+				String name = element.getName().toLowerCase(Locale.ROOT);
+				if ("no-cache".equals(name) || "no-store".equals(name)) {
+					return 0;
+				} else if ("max-age".equals(name) && null != element.getValue()) {
+					try {
+						return Math.max(0, Long.parseLong(element.getValue().trim())) * 1000;
+					} catch (NumberFormatException ignored) {
+					}
+				}
 			}
 		}
-		return stmts;
+		return defaultTtl;
 	}
 
 	/**
 	 * Create a new HttpClient instance that prefers text/turtle content.
+	 * <p>
+	 * Connections are pooled and kept alive as long as the server permits.
+	 * Gzip and deflate compressed responses are accepted and decoded
+	 * transparently.
 	 */
 	protected static CloseableHttpClient createHttpClient() {
 		Header acceptTurtleHeader = new BasicHeader(HttpHeaders.ACCEPT, "text/turtle");
-		return HttpClients.custom().setDefaultHeaders(Arrays.asList(acceptTurtleHeader)).build();
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		// re-validate connections that were idle for some time before reusing them
+		connectionManager.setValidateAfterInactivity(2000);
+		RequestConfig requestConfig = RequestConfig.custom() //
+				.setConnectTimeout(connectTimeout) //
+				.setConnectionRequestTimeout(connectTimeout) //
+				.setSocketTimeout(readTimeout) //
+				.build();
+		return HttpClients.custom() //
+				.setConnectionManager(connectionManager) //
+				.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE) //
+				.evictIdleConnections(60, TimeUnit.SECONDS) //
+				.setDefaultRequestConfig(requestConfig) //
+				.setDefaultHeaders(Arrays.asList(acceptTurtleHeader)) //
+				.build();
 	}
 }
@@ -0,0 +1,159 @@
+package net.enilink.platform.ldp.remote;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.MalformedQueryException;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.algebra.StatementPattern;
+import org.eclipse.rdf4j.query.algebra.Var;
+import org.eclipse.rdf4j.query.algebra.helpers.AbstractQueryModelVisitor;
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Updates multiple LDP resources concurrently to warm the cache before a
+ * query is evaluated.
+ * <p>
+ * The resources are updated on a bounded thread pool using
+ * {@link LdpClient#update(org.eclipse.rdf4j.model.Resource, IRI)}. Resources
+ * that are still fresh are skipped by the client without any request.
+ */
+public class LdpPrefetcher {
+
+	protected final static Logger logger = LoggerFactory.getLogger(LdpPrefetcher.class);
+
+	public final static int DEFAULT_THREADS = 8;
+	public final static long DEFAULT_TIMEOUT = 30000;
+
+	protected static int threads = DEFAULT_THREADS;
+	protected static long timeout = DEFAULT_TIMEOUT;
+
+	protected static ThreadPoolExecutor executor;
+
+	/**
+	 * Configures the number of concurrent updates, replaces an existing thread
+	 * pool.
+	 *
+	 * @param threads The maximum number of resources that are fetched
+	 *                concurrently.
+	 * @param timeout The default time in milliseconds to wait for a prefetch.
+	 */
+	public static synchronized void configure(int threads, long timeout) {
+		LdpPrefetcher.threads = Math.max(1, threads);
+		LdpPrefetcher.timeout = timeout;
+		shutdown();
+	}
+
+	/**
+	 * Stops the thread pool.
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	protected static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			AtomicInteger threadCount = new AtomicInteger();
+			executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+					r -> {
+						Thread thread = new Thread(r, "ldp-prefetch-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Collects the IRIs that are bound as subject or object of the statement
+	 * patterns within the given query.
+	 *
+	 * @return The bound IRIs or an empty set if the query can not be parsed.
+	 */
+	public static Set<IRI> getBoundResources(QueryLanguage ql, String query, String baseURI) {
+		Set<IRI> resources = new LinkedHashSet<>();
+		try {
+			QueryParserUtil.parseQuery(ql, query, baseURI).getTupleExpr()
+					.visit(new AbstractQueryModelVisitor<RuntimeException>() {
+						@Override
+						public void meet(StatementPattern pattern) {
+							addResource(pattern.getSubjectVar());
+							addResource(pattern.getObjectVar());
+						}
+
+						void addResource(Var var) {
+							Value value = var == null ? null : var.getValue();
+							if (value instanceof IRI) {
+								resources.add((IRI) value);
+							}
+						}
+					});
+		} catch (MalformedQueryException | UnsupportedOperationException e) {
+			logger.trace("unable to collect resources from query: {}", e.getMessage());
+		}
+		return resources;
+	}
+
+	/**
+	 * Concurrently updates all LDP-mapped resources of the given collection
+	 * and waits until all updates are finished or the default timeout
+	 * elapses.
+	 *
+	 * @see #prefetch(Collection, long)
+	 */
+	public static int prefetch(Collection<? extends IRI> resources) {
+		return prefetch(resources, timeout);
+	}
+
+	/**
+	 * Concurrently updates all LDP-mapped resources of the given collection
+	 * and waits until all updates are finished or the timeout elapses.
+	 *
+	 * @param resources The resources to update, resources without an endpoint
+	 *                  are ignored.
+	 * @param timeout   The maximum time in milliseconds to wait.
+	 * @return The number of updated resources.
+	 */
+	public static int prefetch(Collection<? extends IRI> resources, long timeout) {
+		LdpCache cache = LdpCache.getInstance();
+		if (null == cache) {
+			return 0;
+		}
+		List<Future<Boolean>> updates = new ArrayList<>();
+		for (IRI resource : new LinkedHashSet<>(resources)) {
+			IRI endpoint = cache.getEndpoint(resource);
+			if (null != endpoint) {
+				updates.add(getExecutor().submit(() -> LdpClient.update(resource, endpoint)));
+			}
+		}
+		int updated = 0;
+		long deadline = System.currentTimeMillis() + timeout;
+		for (Future<Boolean> update : updates) {
+			try {
+				if (update.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+					updated++;
+				}
+			} catch (TimeoutException e) {
+				// continue in the background, queries will read the old data
+				logger.debug("timeout while prefetching LDP resources");
+				break;
+			} catch (ExecutionException e) {
+				logger.error("while trying to prefetch LDP-mapped entity", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		logger.trace("prefetched {} of {} LDP resources", updated, updates.size());
+		return updated;
+	}
+}
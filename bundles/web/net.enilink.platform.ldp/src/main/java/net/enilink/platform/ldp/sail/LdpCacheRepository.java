@@ -2,6 +2,7 @@ package net.enilink.platform.ldp.sail;
 
 import net.enilink.platform.ldp.remote.LdpCache;
 import net.enilink.platform.ldp.remote.LdpClient;
+import net.enilink.platform.ldp.remote.LdpPrefetcher;
 import org.eclipse.rdf4j.common.iteration.EmptyIteration;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
@@ -15,6 +16,7 @@ import org.eclipse.rdf4j.rio.RDFHandlerException;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Repository to be used as federation member for the LDP cache.
@@ -190,10 +192,25 @@ public class LdpCacheRepository extends AbstractRepository {
 					includeInferred, handler, contexts);
 		}
 
+		/**
+		 * Concurrently updates the LDP resources that are bound by the query
+		 * to avoid sequential requests during its evaluation.
+		 */
+		protected void prefetch(QueryLanguage ql, String query, String baseURI) {
+			if (null == LdpCache.getInstance() || LdpCache.getEndpoints().isEmpty()) {
+				return;
+			}
+			Set<IRI> resources = LdpPrefetcher.getBoundResources(ql, query, baseURI);
+			if (!resources.isEmpty()) {
+				LdpPrefetcher.prefetch(resources);
+			}
+		}
+
 		@Override
 		public Query prepareQuery(QueryLanguage ql, String query, String baseURI)
 				throws RepositoryException, MalformedQueryException {
 			logger.trace("prepareQuery(q={})", query);
+			prefetch(ql, query, baseURI);
 			return getInternalConnection().prepareQuery(ql, query, baseURI);
 		}
 
@@ -201,6 +218,7 @@ public class LdpCacheRepository extends AbstractRepository {
 		public BooleanQuery prepareBooleanQuery(QueryLanguage ql, String query, String baseURI)
 				throws RepositoryException, MalformedQueryException {
 			logger.trace("prepareBooleanQuery(q={})", query);
+			prefetch(ql, query, baseURI);
 			return getInternalConnection().prepareBooleanQuery(ql, query, baseURI);
 		}
 
@@ -208,6 +226,7 @@ public class LdpCacheRepository extends AbstractRepository {
 		public GraphQuery prepareGraphQuery(QueryLanguage ql, String query, String baseURI)
 				throws RepositoryException, MalformedQueryException {
 			logger.trace("prepareGraphQuery(q={})", query);
+			prefetch(ql, query, baseURI);
 			return getInternalConnection().prepareGraphQuery(ql, query, baseURI);
 		}
 
@@ -215,6 +234,7 @@ public class LdpCacheRepository extends AbstractRepository {
 		public TupleQuery prepareTupleQuery(QueryLanguage ql, String query, String baseURI)
 				throws RepositoryException, MalformedQueryException {
 			logger.trace("prepareTupleQuery(q={})", query);
+			prefetch(ql, query, baseURI);
 			return getInternalConnection().prepareTupleQuery(ql, query, baseURI);
 		}
 
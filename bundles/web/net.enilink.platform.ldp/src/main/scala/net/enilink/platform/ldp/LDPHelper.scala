@@ -1,6 +1,6 @@
 package net.enilink.platform.ldp
 
-import java.io.{ByteArrayOutputStream, OutputStream}
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, InputStream, OutputStream}
 import java.time.Instant
 import java.util.{Comparator, Properties}
 
@@ -9,6 +9,7 @@ import net.enilink.komma.core._
 import net.enilink.komma.model.{IModel, ModelUtil}
 import net.enilink.platform.ldp.config._
 import net.enilink.platform.ldp.impl.OperationResponse
+import net.enilink.platform.lift.rest.BlobResponse
 import net.enilink.platform.lift.util.Globals
 import net.enilink.platform.web.rest.ModelsRest
 import net.enilink.vocab.owl.OWL
@@ -25,6 +26,7 @@ import org.eclipse.rdf4j.rio.Rio
 
 import scala.collection.mutable.ListBuffer
 import scala.jdk.CollectionConverters._
+import scala.util.Using
 
 /**
  * Linked Data Platform (LDP) endpoint support.
@@ -335,11 +337,16 @@ class LDPHelper extends RestHelper {
       URIs.createURI(req.request.url.replace(req.hostAndPath + "/", uri.trimSegments(2).toString))
     }
 
-    def createNoneRdfResource(binaryBody: Array[Byte], resourceUri: URI, model: IModel, conf: RdfResourceHandler): Boolean = {
+    def createNoneRdfResource(binaryBody: InputStream, resourceUri: URI, model: IModel, conf: RdfResourceHandler): Boolean = {
       Globals.fileStore.make.map { fs =>
+        // hash and store the body in a single pass
+        (fs, Using.resource(binaryBody)(fs.store(_)))
+      }.filter { case (fs, fsKey) =>
+        // empty bodies are not accepted
+        fs.size(fsKey) > 0 || { fs.delete(fsKey); false }
+      }.map { case (fs, fsKey) =>
         val mimeType = req.contentType.openOr("application/octet-stream")
         val fileName = requestedSlug._1
-        val fsKey = fs.store(binaryBody)
         val props = new Properties
         props.setProperty("contentType", mimeType)
         // FileService sends disposition: attachment when the filename is set
@@ -391,7 +398,7 @@ class LDPHelper extends RestHelper {
           } else {
             Full(FailedResponse(result.code(), result.msg(), constraintHeader))
           }
-        case Right(Full(noneRdfContent)) if noneRdfContent.length > 0 =>
+        case Right(Full(noneRdfContent)) =>
           if (createNoneRdfResource(noneRdfContent, resourceUri, m, resConf)) {
             Full(new UpdateResponse(resourceUri.toString, LDP.TYPE_NONRDFSOURCE))
           } else {
@@ -448,13 +455,14 @@ class LDPHelper extends RestHelper {
     }
   }
 
-  def getBodyEntity(req: Req, base: String): Either[Model, Box[Array[Byte]]] = {
+  def getBodyEntity(req: Req, base: String): Either[Model, Box[InputStream]] = {
     val rdfFormat = Rio.getParserFormatForMIMEType(
       req.request.contentType.openOr(MIME_TURTLE._1 + "/" + MIME_TURTLE._2))
     if (rdfFormat.isPresent)
       Left(Rio.parse(req.request.inputStream, base, rdfFormat.get))
     else
-      Right(req.body)
+      // prefer the HTTP input stream, fall back to the in-memory body if it was already accessed
+      Right(req.rawInputStream.orElse(req.body.map(new ByteArrayInputStream(_))))
   }
 
   def getHandler(path: List[String], config: Handler): Handler = {
@@ -584,7 +592,7 @@ class LDPHelper extends RestHelper {
               Globals.fileStore.make.map { fs => {
                 val id = res.identifier().localPart()
                 fs.delete(id)
-                val fk = fs.store(bin)
+                val fk = Using.resource(bin)(fs.store(_))
                 res.fileName(fileName)
                 res.identifier(URIs.createURI(s"""blobs:$fk"""))
                 res.format(req.contentType.openOr("application/octet-stream"))
@@ -663,6 +671,17 @@ class LDPHelper extends RestHelper {
       case None => None
     }
 
+    /**
+     * Returns the key and the MIME type of the blob of a non-RDF source whose contents are served as-is.
+     */
+    def blob: Option[(String, String)] = if (!relTypes.contains(LDP.TYPE_NONRDFSOURCE)) None else for {
+      fKey <- fileKey
+      fs <- Globals.fileStore.make.toOption
+      mimeType <- Option(fs.getProperties(fKey).getProperty("contentType"))
+      mime = mimeType.split("/")
+      if mime.length == 2 && (mime(0), mime(1)) != MIME_TURTLE && (mime(0), mime(1)) != MIME_JSONLD
+    } yield (fKey, mimeType)
+
     def generateNoneRdf(rdfFormat: (String, String)): Box[(Int, OutputStream, String, List[(String, String)])] = {
       fileKey match {
         case Some(fKey) =>
@@ -761,46 +780,57 @@ class LDPHelper extends RestHelper {
 
   protected def generateResponse[T](s: TurtleJsonLdSelect, t: T, r: Req): LiftResponse = {
     t match {
-      case c: Convertible => {
-        // refactor Convertable's methods
-        val output = s match {
-          case TurtleSelect => c.toTurtle
-          case JsonLdSelect => c.toJsonLd
-          case DefaultSelect(preferredContentType) =>
-            // fallback is also text/turtle
-            println("WARN: preferred media type " + preferredContentType + " not supported, using default '" + MIME_TURTLE + "'...")
-            c.toTurtle match {
-              // FIXME: return it to the browser as text/plain so that it is displayed
-              case Full((length, stream, contentType, types)) => Full((length, stream, "text/plain", types))
-              case o@_ => o
-            }
+      case c: ContainerContent if r.requestType.get_? || r.requestType.head_? =>
+        c.blob match {
+          case Some((key, mimeType)) =>
+            // stream blobs directly from the file store, also supports range requests
+            val headers = ("Allow", "OPTIONS, HEAD, GET, POST, PUT, DELETE, PATCH") :: ("Content-Type", mimeType) ::
+              ("Accept-Post", "*/*") :: ("Accept-Patch" -> "text/ldpatch") :: linkHeader(c.relTypes.sortBy(_.toString))
+            BlobResponse(Globals.fileStore.vend, key, r, headers, r.requestType.head_?)
+          case None => generateConvertibleResponse(s, c, r)
         }
-        val (status: Int, size: Int, text: String, headers: List[(String, String)]) = output match {
-          case Full((length, stream, contentType, types)) => {
-            if (r.requestType.post_? || (r.requestType.put_? && createNewFromPut)) {
-              (201, length, stream.toString, ("Accept-Post", "*/*") :: ("Accept-Patch" -> "text/ldpatch") :: types)
-            } else {
-              (200, length, stream.toString, ("Content-Type", contentType) :: ("Accept-Post", "*/*") :: ("Accept-Patch" -> "text/ldpatch") :: ("ETag", generateETag(length)) :: types)
-            }
-          }
-          case Failure(msg, _, _) =>
-            c match {
-              case FailedResponse(code, msg, links) => (code, msg.length, msg, links)
-              case _ => (500, msg.length, msg, Nil)
-            }
+      case c: Convertible => generateConvertibleResponse(s, c, r)
+      // ATTN: these next two cases don't actually end up here, lift handles them on its own
+      case f@Failure(msg, _, _) => PlainTextResponse("Unable to complete request: " + msg, ("Content-Type", "text/plain") :: Nil, 500)
+      case Empty => NotFoundResponse("")
+    }
+  }
 
-          case Empty => (404, 0, "", Nil)
+  protected def generateConvertibleResponse(s: TurtleJsonLdSelect, c: Convertible, r: Req): LiftResponse = {
+    // refactor Convertable's methods
+    val output = s match {
+      case TurtleSelect => c.toTurtle
+      case JsonLdSelect => c.toJsonLd
+      case DefaultSelect(preferredContentType) =>
+        // fallback is also text/turtle
+        println("WARN: preferred media type " + preferredContentType + " not supported, using default '" + MIME_TURTLE + "'...")
+        c.toTurtle match {
+          // FIXME: return it to the browser as text/plain so that it is displayed
+          case Full((length, stream, contentType, types)) => Full((length, stream, "text/plain", types))
+          case o@_ => o
         }
-
-        if (r.requestType.head_?) {
-          new HeadResponse(size, ("Allow", "OPTIONS, HEAD, GET, POST, PUT, DELETE, PATCH") :: headers, Nil, status)
+    }
+    val (status: Int, size: Int, text: String, headers: List[(String, String)]) = output match {
+      case Full((length, stream, contentType, types)) => {
+        if (r.requestType.post_? || (r.requestType.put_? && createNewFromPut)) {
+          (201, length, stream.toString, ("Accept-Post", "*/*") :: ("Accept-Patch" -> "text/ldpatch") :: types)
         } else {
-          PlainTextResponse(text, ("Allow", "OPTIONS, HEAD, GET, POST, PUT, DELETE, PATCH") :: headers, status)
+          (200, length, stream.toString, ("Content-Type", contentType) :: ("Accept-Post", "*/*") :: ("Accept-Patch" -> "text/ldpatch") :: ("ETag", generateETag(length)) :: types)
         }
       }
-      // ATTN: these next two cases don't actually end up here, lift handles them on its own
-      case f@Failure(msg, _, _) => PlainTextResponse("Unable to complete request: " + msg, ("Content-Type", "text/plain") :: Nil, 500)
-      case Empty => NotFoundResponse("")
+      case Failure(msg, _, _) =>
+        c match {
+          case FailedResponse(code, msg, links) => (code, msg.length, msg, links)
+          case _ => (500, msg.length, msg, Nil)
+        }
+
+      case Empty => (404, 0, "", Nil)
+    }
+
+    if (r.requestType.head_?) {
+      new HeadResponse(size, ("Allow", "OPTIONS, HEAD, GET, POST, PUT, DELETE, PATCH") :: headers, Nil, status)
+    } else {
+      PlainTextResponse(text, ("Allow", "OPTIONS, HEAD, GET, POST, PUT, DELETE, PATCH") :: headers, status)
     }
   }
 
@@ -0,0 +1,45 @@
+package net.enilink.platform.ldp.remote;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CacheUsageTest {
+	final static ValueFactory vf = SimpleValueFactory.getInstance();
+	final static IRI r1 = vf.createIRI("http://example.org/r1");
+	final static IRI r2 = vf.createIRI("http://example.org/r2");
+	final static IRI r3 = vf.createIRI("http://example.org/r3");
+
+	@Test
+	public void testEvictions() {
+		CacheUsage usage = new CacheUsage();
+		usage.updated(r1, Collections.singleton(r1), 10);
+		usage.updated(r2, Collections.singleton(r2), 20);
+		usage.updated(r3, Collections.singleton(r3), 30);
+		Assert.assertEquals(60, usage.getStatements());
+
+		// within the budget
+		Assert.assertTrue(usage.selectEvictions(60).isEmpty());
+		// the least recently used resources come first
+		Assert.assertEquals(List.of(r1), usage.selectEvictions(50));
+		Assert.assertEquals(List.of(r1, r2), usage.selectEvictions(49));
+
+		usage.accessed(r1);
+		Assert.assertEquals(List.of(r2), usage.selectEvictions(40));
+		Assert.assertEquals(List.of(r2, r3, r1), usage.selectEvictions(0));
+
+		// replaced and removed resources update the number of statements
+		usage.updated(r2, Collections.singleton(r2), 5);
+		Assert.assertEquals(45, usage.getStatements());
+		Assert.assertEquals(List.of(r3), usage.selectEvictions(40));
+		Assert.assertNotNull(usage.removed(r3));
+		Assert.assertNull(usage.removed(r3));
+		Assert.assertEquals(15, usage.getStatements());
+		Assert.assertTrue(usage.selectEvictions(15).isEmpty());
+	}
+}
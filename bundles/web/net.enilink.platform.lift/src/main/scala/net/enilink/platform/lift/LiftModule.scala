@@ -3,7 +3,7 @@ package net.enilink.platform.lift
 import net.enilink.komma.core.{BlankNode, IUnitOfWork, URIs}
 import net.enilink.platform.lift.html.Html5ParserWithRDFaPrefixes
 import net.enilink.platform.lift.rest.FileService
-import net.enilink.platform.lift.util.{CurrentContext, Globals, NotAllowedModel, RdfContext}
+import net.enilink.platform.lift.util.{BlobCollection, CurrentContext, Globals, NotAllowedModel, RdfContext}
 import net.enilink.platform.security.auth.{AccountHelper, EnilinkPrincipal}
 import net.liftweb.common.Box.option2Box
 import net.liftweb.common.{Box, Empty, Full, Logger}
@@ -143,6 +143,8 @@ class LiftModule extends Logger {
         List("Cache-Control" -> "private", "Pragma" -> "")
       case other => defaultHeaders(other)
     }
+    // periodically remove orphaned blobs if enabled
+    BlobCollection.start()
 
     // register REST service for Linked Data Platform support
     // LiftRules.dispatch.append(LDPService)
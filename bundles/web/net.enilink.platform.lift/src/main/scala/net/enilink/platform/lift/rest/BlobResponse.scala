@@ -0,0 +1,78 @@
+package net.enilink.platform.lift.rest
+
+import net.enilink.platform.core.blobs.FileStore
+import net.liftweb.common.{Box, Empty, Failure, Full}
+import net.liftweb.http.{InMemoryResponse, LiftResponse, OutputStreamResponse, Req}
+
+import java.nio.channels.Channels
+
+/**
+ * Serves blobs of a [[FileStore]] with support for single byte ranges.
+ *
+ * The contents are transferred from the store to the response without being buffered in memory.
+ */
+object BlobResponse {
+  private val RangePattern = """bytes=(\d*)-(\d*)""".r
+
+  /**
+   * Parses the value of a Range header.
+   *
+   * Returns the first and the last position of the requested bytes, a [[Failure]] if the range is not
+   * satisfiable or [[Empty]] if the header is invalid or requests multiple ranges and should be ignored.
+   */
+  def parseRange(header: String, size: Long): Box[(Long, Long)] = header.trim match {
+    case RangePattern(first, last) => (first.toLongOption, last.toLongOption) match {
+      case (Some(start), Some(end)) if start <= end =>
+        if (start < size) Full((start, end min (size - 1))) else Failure("Range not satisfiable")
+      case (Some(start), None) if last.isEmpty =>
+        if (start < size) Full((start, size - 1)) else Failure("Range not satisfiable")
+      case (None, Some(suffix)) if first.isEmpty =>
+        if (suffix > 0 && size > 0) Full(((size - suffix) max 0, size - 1)) else Failure("Range not satisfiable")
+      case _ => Empty
+    }
+    case _ => Empty
+  }
+
+  /**
+   * Creates a response for the blob with the given key.
+   *
+   * The key is used as strong entity tag since the contents of a blob never change.
+   *
+   * @param fileStore The store containing the blob
+   * @param key       Key of the blob
+   * @param req       The request which may contain Range and If-Range headers
+   * @param headers   Additional headers like the content type
+   * @param head      `true` if only the headers should be sent
+   */
+  def apply(fileStore: FileStore, key: String, req: Req, headers: List[(String, String)], head: Boolean = false): LiftResponse =
+    apply(fileStore, key, req.header("Range"), req.header("If-Range"), headers, head)
+
+  /**
+   * Creates a response for the blob with the given key and the values of the Range and If-Range headers.
+   */
+  def apply(fileStore: FileStore, key: String, rangeHeader: Box[String], ifRangeHeader: Box[String],
+            headers: List[(String, String)], head: Boolean): LiftResponse = {
+    val size = fileStore.size(key)
+    val etag = "\"" + key + "\""
+    val allHeaders = headers ++ List("Accept-Ranges" -> "bytes", "ETag" -> etag)
+    // a range is only served if the validator given by If-Range (if any) is still current
+    val range = rangeHeader.filter(_ => ifRangeHeader.map(_.trim == etag).openOr(true))
+      .flatMap(parseRange(_, size))
+    range match {
+      case Full((start, end)) =>
+        val length = end - start + 1
+        response(fileStore, key, start, length, ("Content-Range" -> s"bytes $start-$end/$size") :: allHeaders, 206, head)
+      case Failure(_, _, _) =>
+        InMemoryResponse(Array.emptyByteArray, ("Content-Range" -> s"bytes */$size") :: allHeaders, Nil, 416)
+      case _ =>
+        response(fileStore, key, 0, size, allHeaders, 200, head)
+    }
+  }
+
+  private def response(fileStore: FileStore, key: String, start: Long, length: Long,
+                       headers: List[(String, String)], code: Int, head: Boolean): LiftResponse = {
+    OutputStreamResponse({ out =>
+      if (!head) fileStore.transferTo(key, start, length, Channels.newChannel(out))
+    }, length, ("Content-length" -> length.toString) :: headers, Nil, code)
+  }
+}
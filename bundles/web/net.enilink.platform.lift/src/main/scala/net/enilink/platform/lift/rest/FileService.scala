@@ -4,28 +4,19 @@ import net.enilink.platform.lift.util.Globals
 import net.liftweb.common.Loggable
 import net.liftweb.http._
 import net.liftweb.http.provider.HTTPCookie
-import net.liftweb.http.rest.RestHelper
+import net.liftweb.http.rest.{RestContinuation, RestHelper}
 import org.json4s.JsonDSL._
 import org.json4s._
 
-import java.io.File
 import java.io.IOException
 import java.io.InputStream
-import java.nio.file.Files
 import java.util.Properties
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ArrayBlockingQueue, BlockingQueue, RejectedExecutionException, SynchronousQueue, ThreadPoolExecutor, TimeUnit}
 
 import scala.util.Using
 
 object FileService extends RestHelper with CorsHelper with Loggable {
-  /**
-   * Simple response without content.
-   */
-  class HeadResponse(size: Long, headers: List[(String, String)], cookies: List[HTTPCookie], code: Int)
-    extends OutputStreamResponse({
-      _.close
-    }, size: Long, headers: List[(String, String)], cookies: List[HTTPCookie], code: Int) {
-  }
-
   /**
    * Extractor for an HTTP HEAD request.
    */
@@ -48,31 +39,72 @@ object FileService extends RestHelper with CorsHelper with Loggable {
   serve("files" :: Nil prefix {
     case Nil Options _ => OkResponse()
     case Nil Post AllowedMimeTypes(req) => saveAndRespond(req)
-    case key :: Nil Get _ => serveFile(key)
-    case Head(key :: Nil, _) => serveFile(key, head = true)
+    case key :: Nil Get req => serveFile(key, req)
+    case Head(key :: Nil, req) => serveFile(key, req, head = true)
   })
 
-  def serveFile(key: String, head: Boolean = false): LiftResponse = {
+  def serveFile(key: String, req: Req, head: Boolean = false): LiftResponse = {
     val fileStore = Globals.fileStore.vend
     try {
-      val size = fileStore.size(key)
       val props = fileStore.getProperties(key)
       val headers = responseHeaders ++ Option(props.getProperty("contentType")).map("Content-type" -> _).toList ++
-        List("Content-length" -> size.toString) ++
         Option(props.getProperty("fileName")).map(name => ("Content-disposition", "attachment; filename=\"" + name + "\"")).toList
-      if (head) new HeadResponse(size, headers, Nil, 200) else StreamingResponse(fileStore.openStream(key), () => {}, size, headers, Nil, 200)
+      // supports range requests and streams the file without buffering it in memory
+      BlobResponse(fileStore, key, req, headers, head)
     } catch {
       case _: IOException => NotFoundResponse("File does not exist.")
     }
   }
 
+  /**
+   * Executor for storing uploaded files.
+   *
+   * Raw request bodies are streamed into the file store by these threads while multipart uploads are received by Lift
+   * before the request is dispatched.
+   *
+   * The number of concurrent uploads is limited by <code>net.enilink.filestore.maxUploads</code> and the number of
+   * waiting uploads by <code>net.enilink.filestore.maxQueuedUploads</code>. Further uploads are rejected.
+   */
+  private lazy val uploadExecutor: ThreadPoolExecutor = {
+    val maxUploads = Integer.getInteger("net.enilink.filestore.maxUploads", Runtime.getRuntime.availableProcessors).intValue max 1
+    val maxQueued = Integer.getInteger("net.enilink.filestore.maxQueuedUploads", 4 * maxUploads).intValue
+    val queue: BlockingQueue[Runnable] = if (maxQueued > 0) new ArrayBlockingQueue(maxQueued) else new SynchronousQueue
+    val threadCount = new AtomicInteger
+    val executor = new ThreadPoolExecutor(maxUploads, maxUploads, 60L, TimeUnit.SECONDS, queue, (r: Runnable) => {
+      val thread = new Thread(r, "enilink-upload-" + threadCount.incrementAndGet)
+      thread.setDaemon(true)
+      thread
+    })
+    executor.allowCoreThreadTimeOut(true)
+    executor
+  }
+
   def saveAndRespond(req: Req): LiftResponse = {
+    // the request state is not available within the upload threads
+    val headers = responseHeaders
+    val cookies = responseCookies
+    // release the servlet thread while the data is received and stored
+    // multipart uploads have already been received into temporary files by Lift when the request is dispatched,
+    // for them only storing (hashing and moving the file) happens asynchronously
+    RestContinuation.async { reply =>
+      try {
+        uploadExecutor.execute(() => reply(save(req, headers, cookies)))
+      } catch {
+        case _: RejectedExecutionException =>
+          // let clients retry later instead of saturating the disk
+          reply(InMemoryResponse("Too many concurrent uploads.".getBytes("UTF-8"),
+            ("Content-Type" -> "text/plain; charset=utf-8") :: ("Retry-After" -> "10") :: headers, cookies, 503))
+      }
+    }
+  }
+
+  protected def save(req: Req, headers: List[(String, String)], cookies: List[HTTPCookie]): LiftResponse = {
     try {
       // accept first entry from multipart/form-data content (if any)
-      val fpo: Option[FileParamHolder] = req.uploadedFiles.headOption.map { fph =>
+      val jvalue: List[JValue] = req.uploadedFiles.headOption.map { fph =>
         logger.debug("saveAndRespond - multipart/form")
-        // return param holder, contentType and fileName taken from attachment info
-        fph
+        // use param holder, contentType and fileName taken from attachment info
+        saveFile(fph)
       }.orElse {
         // accept posted data from body, prefer HTTP inputstream
         // if already accessed, fall back to in-memory array
@@ -83,29 +115,22 @@ object FileService extends RestHelper with CorsHelper with Loggable {
           val fileName = req.header("Slug").openOr("unknown")
           soa match { // stream-or-array
             case is : InputStream =>
-              // transfer data from stream to temporary file
-              val tmpFile = File.createTempFile("upload-", ".tmp")
-              Using(Files.newOutputStream(tmpFile.toPath)) { os =>
-                logger.debug(s"""writing to $tmpFile""")
-                is.transferTo(os)
-                is.close()
-              }
-              // create param holder for temporary file (like lift does for attachments)
-              new OnDiskFileParamHolder("upload", contentType, fileName, tmpFile)
+              // hash and store data from stream in a single pass
+              val key = Using.resource(is)(Globals.fileStore.vend.store(_))
+              saveProperties(key, contentType, fileName)
             case data : Array[Byte] =>
               // create param holder for data already loaded into memory
-              FileParamHolder("memory", contentType, fileName, data)
+              saveFile(FileParamHolder("memory", contentType, fileName, data))
             case null => throw new Exception("illegal argument")
           }
         }
-      }
-      val jvalue: List[JValue] = fpo.map(saveFile).getOrElse(List("size" -> 0L))
-      JsonResponse(jvalue, responseHeaders, S.responseCookies, 200)
+      }.getOrElse(List("size" -> 0L))
+      JsonResponse(jvalue, headers, cookies, 200)
     } catch {
       case t: Throwable =>
         logger.error("saveAndRespond failed", t)
         val jerror = List(("status" -> "error") ~ ("message" -> s"""could not store file content: ${ t.getClass.getSimpleName } - ${ t.getMessage }"""))
-        JsonResponse(jerror, responseHeaders, S.responseCookies, 500)
+        JsonResponse(jerror, headers, cookies, 500)
     }
   }
 
@@ -119,11 +144,23 @@ object FileService extends RestHelper with CorsHelper with Loggable {
         case fp: OnDiskFileParamHolder => fileStore.store(fp.localPath, true)
         case fp => fileStore.store(fp.file)
       }
+      saveProperties(key, fp.mimeType, fp.fileName)
+    }
+  }
+
+  def saveProperties(key: String, mimeType: String, fileName: String): List[JValue] = {
+    val fileStore = Globals.fileStore.vend
+    val len = fileStore.size(key)
+    if (len == 0) {
+      // empty blobs are not kept
+      fileStore.delete(key)
+      List("size" -> 0L)
+    } else {
       val props = new Properties
-      props.setProperty("contentType", fp.mimeType)
-      props.setProperty("fileName", fp.fileName)
+      props.setProperty("contentType", mimeType)
+      props.setProperty("fileName", fileName)
       fileStore.setProperties(key, props)
-      List(("id" -> key) ~ ("type" -> fp.mimeType) ~ ("size" -> len))
+      List(("id" -> key) ~ ("type" -> mimeType) ~ ("size" -> len))
     }
   }
 }
@@ -12,7 +12,7 @@ import scala.xml.{Elem, MetaData, NodeSeq, UnprefixedAttribute}
 
 object Tests {
   def group(e: xml.Elem, param: String): Boolean = tryo(URIs.createURI(param)) exists { uri =>
-    Globals.contextModelSet.vend exists { ms => SecurityUtil.isMemberOf(ms.getMetaDataManager, uri) }
+    Globals.contextModelSet.vend exists { ms => SecurityUtil.isMemberOf(ms, uri) }
   }
 
   def split(name: String): (String, String) = name.indexOf('.') match {
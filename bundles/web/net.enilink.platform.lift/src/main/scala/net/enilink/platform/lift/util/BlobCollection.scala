@@ -0,0 +1,57 @@
+package net.enilink.platform.lift.util
+
+import net.enilink.platform.core.ModelSetManager
+import net.enilink.platform.core.blobs.{BlobCollector, BlobReferences}
+import net.liftweb.common.{Box, Full, Logger}
+import net.liftweb.util.Helpers.{TimeSpan, tryo}
+import net.liftweb.util.Schedule
+
+import scala.jdk.CollectionConverters._
+
+/**
+ * Periodically removes blobs from the file store that are no longer referenced within the model sets of the
+ * [[ModelSetManager]].
+ *
+ * Blobs are referenced by <code>blobs:&lt;key&gt;</code> URIs, by URLs of the form <code>.../files/&lt;key&gt;</code>
+ * or by their plain keys (see [[BlobReferences]]).
+ *
+ * The collection is enabled by setting the system property <code>net.enilink.filestore.gc.interval</code> to an
+ * interval in minutes. Orphaned blobs are only reported unless <code>net.enilink.filestore.gc.dryRun</code>
+ * is set to <code>false</code>. Orphaned blobs are also only reported if the application registers further model
+ * sets via [[Globals.contextModelSetRules]] as their references can not be determined.
+ */
+object BlobCollection extends Logger {
+  private[lift] def start(): Unit = {
+    Box.legacyNullTest(System.getProperty("net.enilink.filestore.gc.interval"))
+      .flatMap(interval => tryo(interval.trim.toLong)).filter(_ > 0).foreach(schedule)
+  }
+
+  private def schedule(minutes: Long): Unit = {
+    Schedule.schedule(() => {
+      try {
+        collect(!"false".equalsIgnoreCase(System.getProperty("net.enilink.filestore.gc.dryRun")))
+      } catch {
+        case e: Exception => error("Collection of orphaned blobs failed", e)
+      }
+      schedule(minutes)
+    }, TimeSpan(minutes * 60 * 1000))
+  }
+
+  /**
+   * Collects all blobs that are not referenced by any statement of the model sets managed by [[ModelSetManager]].
+   */
+  def collect(dryRun: Boolean): Box[BlobCollector.Report] = {
+    // other model sets may also reference blobs
+    val allScanned = Globals.contextModelSetRules.toList.isEmpty
+    if (!dryRun && !allScanned) {
+      warn("Orphaned blobs are only reported since not all model sets can be scanned for references")
+    }
+    val referenced = BlobReferences.find(ModelSetManager.INSTANCE.getModelSets)
+    val report = new BlobCollector(Globals.fileStore.vend).collect(referenced.contains(_), dryRun || !allScanned)
+    info(report.toString)
+    if (report.isDryRun && !report.getOrphans.isEmpty) {
+      info("Orphaned blobs: " + report.getOrphans.asScala.mkString(", "))
+    }
+    Full(report)
+  }
+}
@@ -123,7 +123,8 @@ object Globals extends Factory {
 
   implicit val fileStore: Globals.FactoryMaker[FileStore] = new FactoryMaker(() => {
     val path = Box.legacyNullTest(System.getProperty("net.enilink.filestore.path")) map (Paths.get(_)) openOr Platform.getLocation.toFile.toPath.resolve("files")
-    new FileStore(path)
+    new FileStore(path, java.lang.Boolean.getBoolean("net.enilink.filestore.chunked"),
+      System.getProperty("net.enilink.filestore.algorithm", FileStore.SHA1))
   }) {}
 
   private[lift] def close() : Unit = {
@@ -0,0 +1,98 @@
+package net.enilink.platform.lift.rest
+
+import net.enilink.platform.core.blobs.FileStore
+import net.liftweb.common.{Box, Empty, Full}
+import net.liftweb.http.{InMemoryResponse, LiftResponse, OutputStreamResponse}
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.{AfterEach, BeforeEach, Test}
+
+import java.io.ByteArrayOutputStream
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+
+class BlobResponseTest {
+  private val data = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII)
+
+  private var root: Path = _
+  private var store: FileStore = _
+  private var key: String = _
+
+  @BeforeEach
+  def createStore(): Unit = {
+    root = Files.createTempDirectory("blob-response-test")
+    store = new FileStore(root)
+    key = store.store(data)
+  }
+
+  @AfterEach
+  def deleteStore(): Unit = {
+    store.delete(key)
+    Files.delete(root)
+  }
+
+  private def respond(range: Box[String], ifRange: Box[String] = Empty): LiftResponse =
+    BlobResponse(store, key, range, ifRange, Nil, head = false)
+
+  private def header(response: LiftResponse, name: String): Option[String] = response match {
+    case r: OutputStreamResponse => r.headers.find(_._1 == name).map(_._2)
+    case r: InMemoryResponse => r.headers.find(_._1 == name).map(_._2)
+    case _ => None
+  }
+
+  private def content(response: LiftResponse): String = response match {
+    case r: OutputStreamResponse =>
+      val out = new ByteArrayOutputStream
+      r.out(out)
+      new String(out.toByteArray, StandardCharsets.US_ASCII)
+    case r => fail(s"Unexpected response $r")
+  }
+
+  @Test
+  def fullContent(): Unit = {
+    val response = respond(Empty)
+    assertEquals(200, response.asInstanceOf[OutputStreamResponse].code)
+    assertEquals(Some("bytes"), header(response, "Accept-Ranges"))
+    assertEquals("0123456789abcdefghij", content(response))
+  }
+
+  @Test
+  def singleRange(): Unit = {
+    val response = respond(Full("bytes=2-5"))
+    assertEquals(206, response.asInstanceOf[OutputStreamResponse].code)
+    assertEquals(Some("bytes 2-5/20"), header(response, "Content-Range"))
+    assertEquals("2345", content(response))
+
+    // the end of the range is limited to the size of the blob
+    assertEquals("fghij", content(respond(Full("bytes=15-100"))))
+  }
+
+  @Test
+  def suffixRange(): Unit = {
+    val response = respond(Full("bytes=-4"))
+    assertEquals(206, response.asInstanceOf[OutputStreamResponse].code)
+    assertEquals(Some("bytes 16-19/20"), header(response, "Content-Range"))
+    assertEquals("ghij", content(response))
+  }
+
+  @Test
+  def unsatisfiableRange(): Unit = {
+    val response = respond(Full("bytes=20-"))
+    assertTrue(response.isInstanceOf[InMemoryResponse])
+    assertEquals(416, response.asInstanceOf[InMemoryResponse].code)
+    assertEquals(Some("bytes */20"), header(response, "Content-Range"))
+  }
+
+  @Test
+  def ifRange(): Unit = {
+    // the range is served if the entity tag matches
+    val matching = respond(Full("bytes=0-1"), Full("\"" + key + "\""))
+    assertEquals(206, matching.asInstanceOf[OutputStreamResponse].code)
+    assertEquals("01", content(matching))
+
+    // otherwise the whole blob is sent
+    val mismatch = respond(Full("bytes=0-1"), Full("\"other\""))
+    assertEquals(200, mismatch.asInstanceOf[OutputStreamResponse].code)
+    assertEquals(None, header(mismatch, "Content-Range"))
+    assertEquals("0123456789abcdefghij", content(mismatch))
+  }
+}
@@ -38,7 +38,7 @@ public class CreateModelCommandHandler extends AbstractHandler {
 				@SuppressWarnings("serial")
 				@Override
 				protected String withService(final IModelSet modelSet) {
-					final boolean isAdmin = SecurityUtil.isMemberOf(modelSet.getMetaDataManager(), SecurityUtil.ADMINISTRATORS_GROUP);
+					final boolean isAdmin = SecurityUtil.isMemberOf(modelSet, SecurityUtil.ADMINISTRATORS_GROUP);
 					URI user = SecurityUtil.getUser();
 					final URI requestURI = URIs.createURI(RWT.getRequest().getRequestURL().toString());
 					final URI modelNS = URIs.createURI(requestURI.scheme() + "://" + requestURI.authority() + "/models/" + user.localPart() + "/");